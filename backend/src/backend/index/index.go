@@ -263,20 +263,18 @@ func (i Indexer) saveToRedis(id int64, words []string, weight uint) {
 
 	c.Send("MULTI")
 
-	//sadd := make([]interface{}, 0)
-	//sadd = append(sadd, redis.BuildKey(UrlPrefix, "%d", id))
+	// the set of every indexed term feeds the frontend's completions
+	sadd := make([]interface{}, 0, len(count)+1)
+	sadd = append(sadd, TermSetKey)
 
 	for word, num := range count {
 		c.Send("ZADD", redis.BuildKey(TermPrefix, "%s", word), "INCR", num*weight, id)
-		//sadd = append(sadd, word)
+		sadd = append(sadd, word)
 	}
 
-	//if len(sadd) > 1 {
-	//c.Send("SADD", sadd...)
-
-	//sadd[0] = TermSetKey
-	//c.Send("SADD", sadd...)
-	//}
+	if len(sadd) > 1 {
+		c.Send("SADD", sadd...)
+	}
 
 	c.Send("INCRBY", redis.BuildKey(CountPrefix, "%d", id), len(count))
 	c.Send("INCRBY", "total_words", len(count))
@@ -0,0 +1,115 @@
+package codeu.unnamed.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import codeu.unnamed.frontendweb.CompletionIndex;
+import ds.tree.PackedRadixTree;
+import ds.tree.RadixTreeImpl;
+
+/**
+ * Completion lookups on the pointer based tree, the packed tree and the
+ * {@link CompletionIndex} in front of it, over a synthetic vocabulary.
+ *
+ * Prefixes are two to five characters of random vocabulary words; mistyped
+ * prefixes have one of their characters replaced, so that they usually
+ * have no exact completion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompletionBenchmark {
+
+	// same as AutoCompletion
+	private static final int LIMIT = 5;
+	private static final int HOT_PREFIX_LENGTH = 3;
+	private static final int FUZZY_NODE_BUDGET = 20000;
+
+	private static final int PREFIXES = 1024;
+
+	@Param({"10000", "100000"})
+	public int vocabulary;
+
+	private String[] prefixes;
+	private String[] typos;
+	private int next;
+
+	private RadixTreeImpl<String> radixTree;
+	private PackedRadixTree packedTree;
+	private CompletionIndex completionIndex;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		SyntheticCorpus corpus = new SyntheticCorpus(1, vocabulary, 3);
+		String[] words = corpus.getVocabulary();
+
+		radixTree = new RadixTreeImpl<>();
+		for (String word : words) {
+			radixTree.insert(word, word);
+		}
+		packedTree = PackedRadixTree.of(corpus.getScoredVocabulary());
+		// no LRU, so every prefix longer than the hot ones reaches the tree
+		completionIndex = new CompletionIndex(packedTree, LIMIT, HOT_PREFIX_LENGTH, 0, FUZZY_NODE_BUDGET);
+
+		Random random = new Random(11);
+		prefixes = new String[PREFIXES];
+		typos = new String[PREFIXES];
+		for (int i = 0; i < PREFIXES; i++) {
+			String word = words[random.nextInt(words.length)];
+			prefixes[i] = word.substring(0, Math.min(word.length(), 2 + random.nextInt(4)));
+
+			char[] typo = word.substring(0, Math.min(word.length(), 6)).toCharArray();
+			int at = 1 + random.nextInt(typo.length - 1);
+			typo[at] = (char) ('a' + (typo[at] - 'a' + 1 + random.nextInt(25)) % 26);
+			typos[i] = new String(typo);
+		}
+	}
+	@Benchmark
+	public List<String> radixTreeSearchPrefix()
+	{
+		return radixTree.searchPrefix(prefixes[next++ % PREFIXES], LIMIT);
+	}
+	@Benchmark
+	public List<String> packedSearchPrefix()
+	{
+		return packedTree.searchPrefix(prefixes[next++ % PREFIXES], LIMIT);
+	}
+	@Benchmark
+	public List<String> packedSearchTop()
+	{
+		return packedTree.searchTop(prefixes[next++ % PREFIXES], LIMIT);
+	}
+	@Benchmark
+	public List<String> packedSearchFuzzy()
+	{
+		String typo = typos[next++ % PREFIXES];
+		return packedTree.searchFuzzy(typo, typo.length() >= 6 ? 2 : 1, LIMIT, FUZZY_NODE_BUDGET);
+	}
+	/**
+	 * Completion as served, falling back to fuzzy search on mistyped prefixes.
+	 */
+	@Benchmark
+	public List<String> complete()
+	{
+		int i = next++ % PREFIXES;
+		return completionIndex.complete(i % 2 == 0 ? prefixes[i] : typos[i]);
+	}
+}
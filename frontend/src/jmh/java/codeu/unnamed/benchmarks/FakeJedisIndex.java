@@ -0,0 +1,217 @@
+package codeu.unnamed.benchmarks;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import codeu.unnamed.frontend.Bm25;
+import codeu.unnamed.frontend.ImpactRanking;
+import codeu.unnamed.frontend.IndexStatistics;
+import codeu.unnamed.frontend.JedisIndex;
+import codeu.unnamed.frontend.PostingList;
+import codeu.unnamed.frontend.RankingFunction;
+import codeu.unnamed.frontend.TermBound;
+
+/**
+ * In-process stand-in for {@link JedisIndex} serving a
+ * {@link SyntheticCorpus}, so the query path can be measured without the
+ * network and Redis taking most of the time.
+ *
+ * Only the reads made by a search are implemented; anything else would need
+ * a Redis connection and fails. The corpus' ids are registered in order
+ * from 0, so every document's ordinal is its id and the corpus' postings
+ * are served as they are.
+ */
+public class FakeJedisIndex extends JedisIndex {
+
+	private SyntheticCorpus corpus;
+	// bounds of every term long enough to have one, as the indexer stores them
+	private Map<String, TermBound> bounds;
+	// impacts of the terms queried so far, ranked and by id, as the impact indexer would store them
+	private Map<String, PostingList[]> impacts = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param corpus collection to serve
+	 * @param withBounds whether terms have score bounds for pruning
+	 */
+	public FakeJedisIndex(SyntheticCorpus corpus, boolean withBounds)
+	{
+		super(null);
+		this.corpus = corpus;
+		this.bounds = new HashMap<>();
+
+		for (long id = 0; id <= corpus.getDocuments(); id++) {
+			getDocumentDictionary().ordinal(id);
+		}
+
+		if (withBounds) {
+			for (String term : corpus.getVocabulary()) {
+				PostingList postings = corpus.getPostings(term);
+				if (postings.size() < TermBound.BLOCK_SIZE) {
+					continue;
+				}
+				int[] lengths = new int[postings.size()];
+				for (int i = 0; i < lengths.length; i++) {
+					lengths[i] = corpus.getDocLength(postings.getDocument(i));
+				}
+				bounds.put(term, TermBound.build(lengths, getGeneration()));
+			}
+		}
+	}
+	@Override
+	public int getTotalDocuments()
+	{
+		return corpus.getDocuments();
+	}
+	@Override
+	public long getGeneration()
+	{
+		return corpus.getDocuments();
+	}
+	@Override
+	public PostingList getPostings(String term, int start, int end)
+	{
+		return corpus.getPostings(term).slice(start, end + 1);
+	}
+	@Override
+	public Map<String, PostingList> getPostings(Collection<String> terms, int[] ordinals)
+	{
+		return lookup(terms, ordinals, false);
+	}
+	@Override
+	public PostingList getImpacts(String term, int start, int end)
+	{
+		return impacts(term)[0].slice(start, end + 1);
+	}
+	@Override
+	public Map<String, PostingList> getImpacts(Collection<String> terms, int[] ordinals)
+	{
+		return lookup(terms, ordinals, true);
+	}
+	@Override
+	public boolean hasImpacts(Collection<String> terms)
+	{
+		return true;
+	}
+	// impacts of a term ranked by impact, then by id
+	private PostingList[] impacts(String term)
+	{
+		return impacts.computeIfAbsent(term, (key) -> {
+			PostingList byId = corpus.getPostingsById(term);
+			IndexStatistics stats = new IndexStatistics(corpus.getDocuments(), getAverageDocLength(), term, byId.size());
+			RankingFunction.TermScorer scorer = new ImpactRanking(Bm25.DEFAULT).impacts(stats, term);
+
+			int[] ids = new int[byId.size()];
+			int[] values = new int[byId.size()];
+			Integer[] order = new Integer[byId.size()];
+			for (int i = 0; i < ids.length; i++) {
+				ids[i] = byId.getDocument(i);
+				values[i] = ImpactRanking.quantize(scorer.score(byId.getFrequency(i), corpus.getDocLength(ids[i])));
+				order[i] = i;
+			}
+			Arrays.sort(order, (a, b) -> Integer.compare(values[b], values[a]));
+
+			int[] rankedIds = new int[ids.length];
+			int[] rankedValues = new int[ids.length];
+			for (int i = 0; i < ids.length; i++) {
+				rankedIds[i] = ids[order[i]];
+				rankedValues[i] = values[order[i]];
+			}
+			return new PostingList[] {new PostingList(rankedIds, rankedValues), new PostingList(ids, values)};
+		});
+	}
+	// frequencies, or impacts, of the given documents in each term
+	private Map<String, PostingList> lookup(Collection<String> terms, int[] ids, boolean byImpact)
+	{
+		Map<String, PostingList> postings = new LinkedHashMap<>();
+
+		for (String term : terms) {
+			PostingList byId = byImpact ? impacts(term)[1] : corpus.getPostingsById(term);
+			int[] found = new int[ids.length];
+			int[] frequencies = new int[ids.length];
+			int count = 0;
+			for (int id : ids) {
+				int i = find(byId, id);
+				if (i >= 0) {
+					found[count] = id;
+					frequencies[count++] = byId.getFrequency(i);
+				}
+			}
+
+			postings.put(term, new PostingList(found, frequencies).slice(0, count));
+		}
+
+		return postings;
+	}
+	// index of a document in postings sorted by id, or -1
+	private static int find(PostingList byId, int id)
+	{
+		int low = 0;
+		int high = byId.size() - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int found = byId.getDocument(middle);
+			if (found < id) {
+				low = middle + 1;
+			} else if (found > id) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+	@Override
+	public int numberOfDocsContainingTerm(String term)
+	{
+		return corpus.getPostings(term).size();
+	}
+	@Override
+	public int[] numberOfDocsContainingTerms(List<String> terms)
+	{
+		return terms.stream().mapToInt(this::numberOfDocsContainingTerm).toArray();
+	}
+	@Override
+	public Double getAverageDocLength()
+	{
+		return (double) corpus.getTotalWords() / corpus.getDocuments();
+	}
+	@Override
+	public IndexStatistics getStatistics(Map<String, PostingList> postings)
+	{
+		Map<String, Integer> documentFrequency = new HashMap<>();
+		int[] documents = postings.values().stream()
+				.flatMapToInt((list) -> IntStream.range(0, list.size()).map(list::getDocument))
+				.distinct().sorted().toArray();
+
+		for (String term : postings.keySet()) {
+			documentFrequency.put(term, numberOfDocsContainingTerm(term));
+		}
+		int[] lengths = Arrays.stream(documents).map(corpus::getDocLength).toArray();
+
+		return new IndexStatistics(corpus.getDocuments(), getAverageDocLength(), documentFrequency, documents, lengths);
+	}
+	@Override
+	public int[] getDocumentLengths(int[] ordinals)
+	{
+		return Arrays.stream(ordinals).map(corpus::getDocLength).toArray();
+	}
+	@Override
+	public Map<String, TermBound> getTermBounds(Collection<String> terms)
+	{
+		Map<String, TermBound> found = new HashMap<>();
+		for (String term : terms) {
+			if (bounds.containsKey(term)) {
+				found.put(term, bounds.get(term));
+			}
+		}
+		return found;
+	}
+}
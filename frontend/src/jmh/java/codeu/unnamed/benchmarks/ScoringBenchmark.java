@@ -0,0 +1,180 @@
+package codeu.unnamed.benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import codeu.unnamed.frontend.Bm25;
+import codeu.unnamed.frontend.ImpactRanking;
+import codeu.unnamed.frontend.IndexStatistics;
+import codeu.unnamed.frontend.MapBM;
+import codeu.unnamed.frontend.PostingCache;
+import codeu.unnamed.frontend.PostingList;
+import codeu.unnamed.frontend.QueryExecutor;
+import codeu.unnamed.frontend.QueryResultCache;
+import codeu.unnamed.frontend.RankingFunction;
+import codeu.unnamed.frontend.TfIdf;
+import codeu.unnamed.frontend.UserQuery;
+import codeu.unnamed.frontend.WebSearch;
+
+/**
+ * Stages of ranking a query, from scoring single postings to a whole
+ * {@link WebSearch#processQueries(String[], int, int)} against the fake
+ * index.
+ *
+ * The per stage benchmarks work on the postings of one query read down to
+ * the given depth, as a search round would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class ScoringBenchmark {
+
+	private static final int QUERIES = 64;
+
+	@Param({"10000", "50000"})
+	public int documents;
+
+	// postings read per term
+	@Param({"21", "1000"})
+	public int depth;
+
+	private String[][] queries;
+	private int next;
+
+	private PostingList postings;
+	private MapBM<PostingList> mapBM;
+	private int[] frequencies;
+	private int[] lengths;
+	private double[] scores;
+	private RankingFunction.TermScorer bm25;
+	private RankingFunction.TermScorer tfIdf;
+	private List<WebSearch> searches;
+
+	private QueryExecutor executor;
+	private WebSearch webSearch;
+	private ImpactRanking impact;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		SyntheticCorpus corpus = new SyntheticCorpus(documents, 50000, 42);
+		FakeJedisIndex index = new FakeJedisIndex(corpus, true);
+		queries = corpus.queries(QUERIES);
+
+		// one query's postings, looked up like a search round does
+		UserQuery query = new UserQuery(queries[0]);
+		Map<String, PostingList> fetched = new LinkedHashMap<>();
+		for (Map.Entry<String, Integer> entry : query.getQueries()) {
+			fetched.put(entry.getKey(), index.getPostings(entry.getKey(), 0, depth - 1));
+		}
+		IndexStatistics stats = index.getStatistics(fetched);
+
+		searches = new ArrayList<>();
+		for (Map.Entry<String, Integer> entry : query.getQueries()) {
+			searches.add(WebSearch.singleSearch(entry, fetched.get(entry.getKey()), stats));
+		}
+
+		Map.Entry<String, Integer> first = query.getQueries().iterator().next();
+		postings = fetched.get(first.getKey());
+		mapBM = new MapBM<>(postings, stats, first.getKey(), first.getValue());
+		frequencies = postings.copyFrequencies();
+		lengths = stats.termsIndexedOnPages(postings);
+		scores = new double[postings.size()];
+		bm25 = Bm25.DEFAULT.prepare(stats, first.getKey(), first.getValue());
+		tfIdf = new TfIdf().prepare(stats, first.getKey(), first.getValue());
+
+		// every query is ranked from scratch: entries expire at once and no postings are kept
+		executor = new QueryExecutor(4, 256, 500);
+		QueryResultCache cache = new QueryResultCache(index::getGeneration, QUERIES, -1, Long.MAX_VALUE);
+		PostingCache postingCache = new PostingCache(index, index::getGeneration, 0, Long.MAX_VALUE);
+		webSearch = new WebSearch(index, executor, cache, postingCache);
+
+		// impacts are computed once per term, as the impact indexer would
+		impact = new ImpactRanking(Bm25.DEFAULT);
+		for (String[] q : queries) {
+			webSearch.processQueries(q, impact, 0, 20);
+		}
+	}
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		executor.shutdown();
+	}
+	/**
+	 * BM25 score of one posting.
+	 */
+	@Benchmark
+	public double singleRelevance()
+	{
+		int i = next++ % postings.size();
+		return mapBM.getSingleRelevance(postings.getDocument(i), postings.getFrequency(i));
+	}
+	/**
+	 * BM25 scores of all the postings read for a term, with their document
+	 * lengths looked up.
+	 */
+	@Benchmark
+	public double[] convert()
+	{
+		return mapBM.convert(postings);
+	}
+	/**
+	 * Batch scoring loop of each ranking function over a term's postings.
+	 */
+	@Benchmark
+	public double[] scoreBm25()
+	{
+		bm25.score(frequencies, lengths, scores, scores.length);
+		return scores;
+	}
+	@Benchmark
+	public double[] scoreTfIdf()
+	{
+		tfIdf.score(frequencies, lengths, scores, scores.length);
+		return scores;
+	}
+	/**
+	 * Sum of the scores of every term per document.
+	 */
+	@Benchmark
+	public int multiSearch()
+	{
+		return WebSearch.multiSearch(searches).size();
+	}
+	/**
+	 * First page of a query, from the postings to the ranked ids.
+	 */
+	@Benchmark
+	public long[] processQueries()
+	{
+		return webSearch.processQueries(queries[next++ % QUERIES], 0, 20);
+	}
+	/**
+	 * First page of a query scored from precomputed impacts.
+	 */
+	@Benchmark
+	public long[] processQueriesImpact()
+	{
+		return webSearch.processQueries(queries[next++ % QUERIES], impact, 0, 20);
+	}
+}
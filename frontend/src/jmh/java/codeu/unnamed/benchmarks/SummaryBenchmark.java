@@ -0,0 +1,121 @@
+package codeu.unnamed.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tartarus.snowball.SnowballStemmer;
+import org.tartarus.snowball.ext.englishStemmer;
+
+import codeu.unnamed.frontendweb.DocumentSummary;
+import codeu.unnamed.frontendweb.ResultEntry;
+import codeu.unnamed.frontendweb.SnippetGenerator;
+import codeu.unnamed.frontendweb.SnippetIndex;
+
+/**
+ * {@link ResultEntry#generateSummary()} on each of its paths: a match in the
+ * loaded prefix, a match only found by reading the body chunk by chunk, and
+ * a match located through the snippet index.
+ *
+ * Bodies are read from memory, so the chunked case measures the scan and
+ * not the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SummaryBenchmark {
+
+	// same as the result page and the snippet indexer
+	private static final int TEXT_PREFIX_BYTES = 4 * 1024;
+	private static final int MAX_WORDS = 32 * 1024;
+
+	// words of the body before the query term
+	@Param({"1000", "20000"})
+	public int words;
+
+	private String[] stems;
+
+	private byte[] early;
+	private byte[] late;
+	private SnippetIndex lateIndex;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		SyntheticCorpus corpus = new SyntheticCorpus(1, 20000, 7);
+		String[] vocabulary = corpus.getVocabulary();
+		// the rarest word, so nothing but the planted occurrence matches
+		String term = vocabulary[vocabulary.length - 1];
+
+		SnowballStemmer stemmer = new englishStemmer();
+		stemmer.setCurrent(term);
+		stemmer.stem();
+		stems = new String[] {stemmer.getCurrent()};
+
+		early = (term + " " + corpus.getText(words, 7)).getBytes(StandardCharsets.UTF_8);
+		late = corpus.getText(words, 7, term).getBytes(StandardCharsets.UTF_8);
+		lateIndex = SnippetIndex.build(late, MAX_WORDS);
+	}
+	private DocumentSummary summary(byte[] text)
+	{
+		int length = Math.min(text.length, TEXT_PREFIX_BYTES);
+		DocumentSummary summary = new DocumentSummary(1, "http://example.com/", "Example",
+				Arrays.copyOf(text, length), length < text.length);
+		summary.setTextLoader((offset, maxBytes) -> {
+			int start = Math.min(offset, text.length);
+			return new String(text, start, Math.min(maxBytes, text.length - start), StandardCharsets.UTF_8);
+		});
+		return summary;
+	}
+	/**
+	 * Query term at the start of the body, found in the prefix.
+	 */
+	@Benchmark
+	public String prefix()
+	{
+		return new ResultEntry(summary(early), new SnippetGenerator(stems)).getSummary();
+	}
+	/**
+	 * Query term past the prefix and no snippet index, so the body is scanned
+	 * a chunk at a time.
+	 */
+	@Benchmark
+	public String chunks()
+	{
+		return new ResultEntry(summary(late), new SnippetGenerator(stems)).getSummary();
+	}
+	/**
+	 * Query term past the prefix, located through the snippet index.
+	 */
+	@Benchmark
+	public String snippetIndex()
+	{
+		DocumentSummary summary = summary(late);
+		SnippetGenerator snippets = new SnippetGenerator(stems);
+		String[] indexed = snippets.generate(Collections.singletonList(summary),
+				Collections.singletonList(lateIndex), (ids, offsets, lengths) -> {
+					String[] texts = new String[ids.length];
+					for (int i = 0; i < ids.length; i++) {
+						texts[i] = new String(late, offsets[i], lengths[i], StandardCharsets.UTF_8);
+					}
+					return Arrays.asList(texts);
+				});
+		return new ResultEntry(summary, snippets, indexed[0]).getSummary();
+	}
+}
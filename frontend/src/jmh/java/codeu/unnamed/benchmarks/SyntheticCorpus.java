@@ -0,0 +1,261 @@
+package codeu.unnamed.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import codeu.unnamed.frontend.PostingList;
+
+/**
+ * Randomly generated collection shaped like the crawled one, for benchmarks
+ * that must run without Redis or MySQL.
+ *
+ * Words are drawn from a Zipf distribution over a made up vocabulary, so a
+ * few terms have very long postings and most have short ones. Everything is
+ * derived from the seed, and document bodies are regenerated on demand
+ * rather than kept in memory.
+ */
+public class SyntheticCorpus {
+
+	private static final double ZIPF_EXPONENT = 1.0;
+	private static final int MIN_DOC_LENGTH = 50;
+	private static final int MAX_DOC_LENGTH = 500;
+
+	private long seed;
+	private int documents;
+	private String[] vocabulary;
+	// cumulative Zipf weights of the vocabulary, by rank
+	private double[] cumulative;
+
+	// postings of each term, by decreasing term frequency like the term zsets
+	private Map<String, PostingList> postings;
+	// the same postings by increasing id, for random access
+	private Map<String, PostingList> postingsById;
+	// document length by id, ids running from 1 to documents
+	private int[] lengths;
+	private long totalWords;
+
+	/**
+	 * Generates the corpus.
+	 *
+	 * @param documents number of documents
+	 * @param vocabularySize number of distinct words
+	 * @param seed seed of every random choice
+	 */
+	public SyntheticCorpus(int documents, int vocabularySize, long seed)
+	{
+		this.seed = seed;
+		this.documents = documents;
+		this.vocabulary = vocabulary(vocabularySize, new Random(seed));
+		this.cumulative = new double[vocabularySize];
+
+		double sum = 0.0;
+		for (int rank = 0; rank < vocabularySize; rank++) {
+			sum += 1.0 / Math.pow(rank + 1, ZIPF_EXPONENT);
+			cumulative[rank] = sum;
+		}
+
+		index();
+	}
+	private static String[] vocabulary(int size, Random random)
+	{
+		Set<String> words = new HashSet<>();
+		while (words.size() < size) {
+			char[] word = new char[3 + random.nextInt(8)];
+			for (int i = 0; i < word.length; i++) {
+				word[i] = (char) ('a' + random.nextInt(26));
+			}
+			words.add(new String(word));
+		}
+
+		// shuffled so frequency doesn't follow alphabetical order
+		List<String> shuffled = new ArrayList<>(words);
+		Collections.shuffle(shuffled, random);
+		return shuffled.toArray(new String[size]);
+	}
+	// counts every word of every document into per term postings
+	private void index()
+	{
+		int[][] ids = new int[vocabulary.length][];
+		int[][] frequencies = new int[vocabulary.length][];
+		int[] sizes = new int[vocabulary.length];
+		lengths = new int[documents + 1];
+
+		Map<Integer, Integer> counts = new HashMap<>();
+		for (int id = 1; id <= documents; id++) {
+			int[] words = words(id);
+			lengths[id] = words.length;
+			totalWords += words.length;
+
+			counts.clear();
+			for (int rank : words) {
+				counts.merge(rank, 1, (a, b) -> a + b);
+			}
+			for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+				int rank = entry.getKey();
+				if (ids[rank] == null) {
+					ids[rank] = new int[4];
+					frequencies[rank] = new int[4];
+				} else if (sizes[rank] == ids[rank].length) {
+					ids[rank] = Arrays.copyOf(ids[rank], sizes[rank] * 2);
+					frequencies[rank] = Arrays.copyOf(frequencies[rank], sizes[rank] * 2);
+				}
+				ids[rank][sizes[rank]] = id;
+				frequencies[rank][sizes[rank]++] = entry.getValue();
+			}
+		}
+
+		postings = new HashMap<>();
+		postingsById = new HashMap<>();
+		for (int rank = 0; rank < vocabulary.length; rank++) {
+			if (sizes[rank] == 0) {
+				continue;
+			}
+			int[] termIds = Arrays.copyOf(ids[rank], sizes[rank]);
+			int[] termFrequencies = Arrays.copyOf(frequencies[rank], sizes[rank]);
+			postingsById.put(vocabulary[rank], new PostingList(termIds, termFrequencies));
+			postings.put(vocabulary[rank], byFrequency(termIds, termFrequencies));
+			ids[rank] = null;
+			frequencies[rank] = null;
+		}
+	}
+	// orders postings by decreasing frequency, then decreasing id
+	private static PostingList byFrequency(int[] ids, int[] frequencies)
+	{
+		long[] packed = new long[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			packed[i] = ((long) frequencies[i] << 40) | ids[i];
+		}
+		Arrays.sort(packed);
+
+		int[] sortedIds = new int[ids.length];
+		int[] sortedFrequencies = new int[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			long posting = packed[ids.length - 1 - i];
+			sortedIds[i] = (int) (posting & ((1L << 40) - 1));
+			sortedFrequencies[i] = (int) (posting >>> 40);
+		}
+		return new PostingList(sortedIds, sortedFrequencies);
+	}
+	/**
+	 * Returns the vocabulary ranks of the words of a document, in order.
+	 */
+	private int[] words(long id)
+	{
+		Random random = new Random(seed * 31 + id);
+		int[] words = new int[MIN_DOC_LENGTH + random.nextInt(MAX_DOC_LENGTH - MIN_DOC_LENGTH)];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = sample(random);
+		}
+		return words;
+	}
+	private int sample(Random random)
+	{
+		int rank = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[cumulative.length - 1]);
+		return Math.min(rank < 0 ? -rank - 1 : rank, cumulative.length - 1);
+	}
+	public int getDocuments()
+	{
+		return this.documents;
+	}
+	public long getTotalWords()
+	{
+		return this.totalWords;
+	}
+	/**
+	 * Returns the words of the vocabulary, most frequent first.
+	 */
+	public String[] getVocabulary()
+	{
+		return this.vocabulary;
+	}
+	/**
+	 * Returns the postings of a term ranked like the term zset, or an empty
+	 * list if no document contains it.
+	 */
+	public PostingList getPostings(String term)
+	{
+		return this.postings.getOrDefault(term, PostingList.EMPTY);
+	}
+	/**
+	 * Returns the postings of a term by increasing document id.
+	 */
+	public PostingList getPostingsById(String term)
+	{
+		return this.postingsById.getOrDefault(term, PostingList.EMPTY);
+	}
+	public int getDocLength(long id)
+	{
+		return id > 0 && id <= documents ? lengths[(int) id] : 0;
+	}
+	/**
+	 * Regenerates the body of a document as space separated words.
+	 */
+	public String getText(long id)
+	{
+		StringBuilder text = new StringBuilder();
+		for (int rank : words(id)) {
+			if (text.length() > 0) {
+				text.append(' ');
+			}
+			text.append(vocabulary[rank]);
+		}
+		return text.toString();
+	}
+	/**
+	 * Returns a body of the given number of words, followed by the given
+	 * words, for summaries whose match is far from the start.
+	 */
+	public String getText(int words, long seed, String... tail)
+	{
+		Random random = new Random(seed);
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < words; i++) {
+			text.append(vocabulary[sample(random)]).append(' ');
+		}
+		for (String word : tail) {
+			text.append(word).append(' ');
+		}
+		return text.toString().trim();
+	}
+	/**
+	 * Returns the words of the vocabulary with a score falling with their
+	 * rank, as the completion tree expects.
+	 */
+	public Map<String, Float> getScoredVocabulary()
+	{
+		Map<String, Float> scored = new LinkedHashMap<>();
+		for (int rank = 0; rank < vocabulary.length; rank++) {
+			scored.put(vocabulary[rank], (float) (1.0 / (rank + 1)));
+		}
+		return scored;
+	}
+	/**
+	 * Generates queries of two or three terms, avoiding the head of the
+	 * vocabulary that a real query would mostly be stop words from.
+	 *
+	 * @param count number of queries
+	 */
+	public String[][] queries(int count)
+	{
+		Random random = new Random(seed ^ 0x5DEECE66DL);
+		int from = Math.min(10, vocabulary.length - 1);
+		int to = Math.min(1000, vocabulary.length);
+
+		String[][] queries = new String[count][];
+		for (int q = 0; q < count; q++) {
+			queries[q] = new String[2 + random.nextInt(2)];
+			for (int i = 0; i < queries[q].length; i++) {
+				queries[q][i] = vocabulary[from + random.nextInt(to - from)];
+			}
+		}
+		return queries;
+	}
+}
@@ -0,0 +1,78 @@
+package codeu.unnamed.frontend;
+
+/**
+ * Okapi BM25, with the query term frequency saturated by K2.
+ *
+ * Scores are scaled by 100, and the idf is negative for terms in more than
+ * half of the collection, as they always have been here.
+ */
+public class Bm25 implements RankingFunction {
+
+	public static final Bm25 DEFAULT = new Bm25(1.2, 0.75, 100);
+
+	private final double k1;
+	private final double b;
+	private final double k2;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param k1 saturation of the term frequency in the document
+	 * @param b weight of the document length normalization, from 0 to 1
+	 * @param k2 saturation of the term frequency in the query
+	 */
+	public Bm25(double k1, double b, double k2)
+	{
+		this.k1 = k1;
+		this.b = b;
+		this.k2 = k2;
+	}
+	@Override
+	public String getName()
+	{
+		return "bm25";
+	}
+	/**
+	 * Returns the factor of the score that depends on how many times the
+	 * term occurs in the query, 1 for a single occurrence.
+	 */
+	public double queryWeight(int termWeight)
+	{
+		return ((k2 + 1) * termWeight) / (k2 + termWeight);
+	}
+	@Override
+	public TermScorer prepare(IndexStatistics stats, String term, int termWeight)
+	{
+		double documents = stats.numberOfDocsContainingTerm(term);
+		double idf = Math.log((stats.getTotalDocuments() - documents + 0.5) / (documents + 0.5));
+
+		return new Scorer(idf * (k1 + 1) * queryWeight(termWeight) * 100,
+				k1 * (1 - b), k1 * b / stats.getAverageDocLength());
+	}
+
+	// weight * tf / (k1 * ((1 - b) + b * length / average) + tf)
+	static class Scorer implements TermScorer {
+		private final double weight;
+		private final double base;
+		private final double slope;
+
+		Scorer(double weight, double base, double slope)
+		{
+			this.weight = weight;
+			this.base = base;
+			this.slope = slope;
+		}
+		@Override
+		public void score(int[] frequencies, int[] docLengths, double[] scores, int count)
+		{
+			for (int i = 0; i < count; i++) {
+				scores[i] = weight * frequencies[i] / (base + slope * docLengths[i] + frequencies[i]);
+			}
+		}
+		@Override
+		public double score(int frequency, int docLength)
+		{
+			return weight * frequency / (base + slope * docLength + frequency);
+		}
+	}
+}
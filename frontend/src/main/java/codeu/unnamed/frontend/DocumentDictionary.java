@@ -0,0 +1,166 @@
+package codeu.unnamed.frontend;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Dense int ordinals for the document ids of the index, so the query path
+ * can key postings, accumulators and heaps by int.
+ *
+ * A document gets the next ordinal the first time it is seen and keeps it
+ * for the life of the process; ordinals are never reused, nor stored
+ * anywhere. Lookups of known documents take no lock: the id to ordinal table
+ * is open addressing over atomic arrays, and a slot's ordinal is written
+ * before its id, so a reader that finds the id also sees the ordinal. New
+ * documents are added under the dictionary's monitor, and a table that
+ * fills up is replaced by a larger copy, which readers of the old one find
+ * missing and look up again under the monitor. Ids must not be negative,
+ * which the database never assigns.
+ */
+public class DocumentDictionary {
+
+	private static final int INITIAL_CAPACITY = 1 << 12;
+	// ordinal to id pages are never moved once allocated
+	private static final int PAGE_BITS = 12;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+	// current id to ordinal table
+	private static class Table {
+		// id + 1 in each used slot, 0 in free ones
+		final AtomicLongArray keys;
+		final AtomicIntegerArray ordinals;
+
+		Table(int capacity)
+		{
+			this.keys = new AtomicLongArray(capacity);
+			this.ordinals = new AtomicIntegerArray(capacity);
+		}
+	}
+
+	private volatile Table table = new Table(INITIAL_CAPACITY);
+	// ids by ordinal, PAGE_SIZE per page
+	private volatile long[][] pages = new long[0][];
+	private volatile int size;
+
+	/**
+	 * Returns the ordinal of a document, assigning the next one if the
+	 * document has none yet.
+	 */
+	public int ordinal(long id)
+	{
+		int ordinal = find(table, id);
+		if (ordinal >= 0) {
+			return ordinal;
+		}
+
+		synchronized (this) {
+			ordinal = find(table, id);
+			if (ordinal >= 0) {
+				return ordinal;
+			}
+			return add(id);
+		}
+	}
+	/**
+	 * Returns the ordinals of the given documents, in the same order.
+	 */
+	public int[] ordinals(long[] ids)
+	{
+		int[] ordinals = new int[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			ordinals[i] = ordinal(ids[i]);
+		}
+		return ordinals;
+	}
+	/**
+	 * Returns the id of the document an ordinal was assigned to.
+	 */
+	public long id(int ordinal)
+	{
+		return pages[ordinal >>> PAGE_BITS][ordinal & (PAGE_SIZE - 1)];
+	}
+	/**
+	 * Returns the ids of the given ordinals, in the same order.
+	 */
+	public long[] ids(int[] ordinals)
+	{
+		long[] ids = new long[ordinals.length];
+		for (int i = 0; i < ordinals.length; i++) {
+			ids[i] = id(ordinals[i]);
+		}
+		return ids;
+	}
+	/**
+	 * Returns the number of ordinals assigned so far.
+	 */
+	public int size()
+	{
+		return this.size;
+	}
+
+	// ordinal of id in the table, or -1
+	private static int find(Table table, long id)
+	{
+		int mask = table.keys.length() - 1;
+		int slot = hash(id) & mask;
+
+		long key;
+		while ((key = table.keys.get(slot)) != 0) {
+			if (key == id + 1) {
+				return table.ordinals.get(slot);
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+	// callers hold the monitor
+	private int add(long id)
+	{
+		int ordinal = size;
+		if (ordinal == Integer.MAX_VALUE) {
+			throw new IllegalStateException("Too many documents for int ordinals");
+		}
+
+		if ((ordinal >>> PAGE_BITS) == pages.length) {
+			long[][] grown = new long[pages.length + 1][];
+			System.arraycopy(pages, 0, grown, 0, pages.length);
+			grown[pages.length] = new long[PAGE_SIZE];
+			pages = grown;
+		}
+		pages[ordinal >>> PAGE_BITS][ordinal & (PAGE_SIZE - 1)] = id;
+
+		// keep the table at most half full
+		if ((ordinal + 1) * 2L > table.keys.length()) {
+			Table grown = new Table(table.keys.length() * 2);
+			for (int n = 0; n < ordinal; n++) {
+				put(grown, id(n), n);
+			}
+			table = grown;
+		}
+		put(table, id, ordinal);
+
+		size = ordinal + 1;
+		return ordinal;
+	}
+	private static void put(Table table, long id, int ordinal)
+	{
+		int mask = table.keys.length() - 1;
+		int slot = hash(id) & mask;
+
+		while (table.keys.get(slot) != 0) {
+			slot = (slot + 1) & mask;
+		}
+
+		// the key publishes the ordinal written before it
+		table.ordinals.set(slot, ordinal);
+		table.keys.set(slot, id + 1);
+	}
+	private static int hash(long id)
+	{
+		// finalizer of MurmurHash3, as ids are often consecutive
+		id ^= id >>> 33;
+		id *= 0xff51afd7ed558ccdL;
+		id ^= id >>> 33;
+		return (int) id;
+	}
+}
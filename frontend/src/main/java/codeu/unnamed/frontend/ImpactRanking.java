@@ -0,0 +1,81 @@
+package codeu.unnamed.frontend;
+
+/**
+ * BM25 precomputed per posting by the impact indexer and read in score
+ * order, so that query time only scales each impact by the term's weight in
+ * the query.
+ *
+ * Impacts are the base function's score of a term occurring once in the
+ * query, rounded to hundredths and stored as integers in the place of the
+ * term frequency. Queries some term of which has no impacts yet fall back to
+ * the base function.
+ */
+public class ImpactRanking implements RankingFunction {
+
+	public static final double SCALE = 100;
+
+	private final Bm25 base;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param base function the impacts are computed with
+	 */
+	public ImpactRanking(Bm25 base)
+	{
+		this.base = base;
+	}
+	@Override
+	public String getName()
+	{
+		return "impact";
+	}
+	@Override
+	public boolean usesImpacts()
+	{
+		return true;
+	}
+	@Override
+	public RankingFunction getFallback()
+	{
+		return this.base;
+	}
+	/**
+	 * Converts an impact to the integer stored for it.
+	 */
+	public static int quantize(double impact)
+	{
+		return (int) Math.round(impact * SCALE);
+	}
+	/**
+	 * Returns the scorer the impacts of a term are computed with, from
+	 * statistics of the whole collection.
+	 */
+	public TermScorer impacts(IndexStatistics stats, String term)
+	{
+		return this.base.prepare(stats, term, 1);
+	}
+	/**
+	 * Scores impacts; stats may be null, and document lengths are ignored.
+	 */
+	@Override
+	public TermScorer prepare(IndexStatistics stats, String term, int termWeight)
+	{
+		double weight = this.base.queryWeight(termWeight) / SCALE;
+
+		return new TermScorer() {
+			@Override
+			public void score(int[] impacts, int[] docLengths, double[] scores, int count)
+			{
+				for (int i = 0; i < count; i++) {
+					scores[i] = weight * impacts[i];
+				}
+			}
+			@Override
+			public double score(int impact, int docLength)
+			{
+				return weight * impact;
+			}
+		};
+	}
+}
@@ -0,0 +1,75 @@
+package codeu.unnamed.frontend;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Query-scoped snapshot of the index statistics needed by the ranking
+ * functions.
+ *
+ * Loaded once per query by {@link JedisIndex#getStatistics(Map)} so that
+ * scoring never has to go back to Redis.
+ */
+public class IndexStatistics {
+
+	private int totalDocuments;
+	private double averageDocLength;
+	// maps from term to number of documents containing term
+	private Map<String, Integer> documentFrequency;
+	// ordinals of the documents whose length is known, ascending
+	private int[] documents;
+	// number of terms indexed on each of those documents
+	private int[] documentLength;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param documents ordinals of the candidate documents, ascending
+	 * @param documentLength number of terms indexed on each document
+	 */
+	public IndexStatistics(int totalDocuments, double averageDocLength,
+			Map<String, Integer> documentFrequency, int[] documents, int[] documentLength)
+	{
+		this.totalDocuments = totalDocuments;
+		this.averageDocLength = averageDocLength;
+		this.documentFrequency = documentFrequency;
+		this.documents = documents;
+		this.documentLength = documentLength;
+	}
+	/**
+	 * Constructor for statistics of a single term, without document lengths.
+	 */
+	public IndexStatistics(int totalDocuments, double averageDocLength, String term, int documentFrequency)
+	{
+		this(totalDocuments, averageDocLength, Collections.singletonMap(term, documentFrequency), new int[0], new int[0]);
+	}
+	public int getTotalDocuments()
+	{
+		return this.totalDocuments;
+	}
+	public double getAverageDocLength()
+	{
+		return this.averageDocLength;
+	}
+	public int numberOfDocsContainingTerm(String term)
+	{
+		return this.documentFrequency.getOrDefault(term, 0);
+	}
+	public int termsIndexedOnPage(int document)
+	{
+		int i = Arrays.binarySearch(this.documents, document);
+		return i < 0 ? 0 : this.documentLength[i];
+	}
+	/**
+	 * Returns the length of the document of every posting, in posting order.
+	 */
+	public int[] termsIndexedOnPages(PostingList postings)
+	{
+		int[] lengths = new int[postings.size()];
+		for (int i = 0; i < lengths.length; i++) {
+			lengths[i] = termsIndexedOnPage(postings.getDocument(i));
+		}
+		return lengths;
+	}
+}
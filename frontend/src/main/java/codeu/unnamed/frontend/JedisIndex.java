@@ -1,33 +1,88 @@
 package codeu.unnamed.frontend;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
 import redis.clients.jedis.Tuple;
 
 /**
  * Represents a Redis-backed web search index.
  *
+ * Safe to share between threads: every call borrows its own connection from
+ * the pool and returns it when done. Postings come back with document
+ * ordinals from the index's {@link DocumentDictionary}, and ids are only
+ * used in the calls to Redis.
  */
 public class JedisIndex {
 
-	private Jedis jedis;
+	// hash from term to the state of the index its impacts were computed from
+	private static final String IMPACT_STAMPS = "impact_stamps";
+
+	private JedisPool pool;
+	private DocumentDictionary documents = new DocumentDictionary();
+	private TermDictionary terms = new TermDictionary();
 	/**
 	 * Constructor.
 	 *
-	 * @param jedis
+	 * @param pool
+	 */
+	public JedisIndex(JedisPool pool) {
+		this.pool = pool;
+	}
+	/**
+	 * Returns the ordinals of the documents read from this index.
+	 */
+	public DocumentDictionary getDocumentDictionary()
+	{
+		return this.documents;
+	}
+	/**
+	 * Returns the ids of the terms read from this index.
 	 */
-	public JedisIndex(Jedis jedis) {
-		this.jedis = jedis;
+	public TermDictionary getTermDictionary()
+	{
+		return this.terms;
+	}
+	// borrows a connection, counting the call against the current query
+	private Jedis resource()
+	{
+		QueryTrace.redisCall();
+		return pool.getResource();
 	}
 	public int getTotalDocuments()
 	{
-		String total = jedis.get("total_documents");
+		String total;
+		try (Jedis jedis = resource()) {
+			total = jedis.get("total_documents");
+		}
 		if (total == null) return 0;
 
 		return new Integer(total);
 	}
+	/**
+	 * Returns a number that changes whenever documents are added to the
+	 * index. The indexer bumps total_documents after every document, so
+	 * that counter is used as the generation.
+	 */
+	public long getGeneration()
+	{
+		return getTotalDocuments();
+	}
 	//key for a set that stores all the words occuring on the given page
 	private String urlSet(String url)
 	{
@@ -39,6 +94,21 @@ public class JedisIndex {
 	{
 		return "term:"+term;
 	}
+	//key for the precomputed snippet index of a document
+	private byte[] snippetKey(long id)
+	{
+		return ("snippet:"+id).getBytes(StandardCharsets.UTF_8);
+	}
+	//key for the postings of a term ranked by impact
+	private String impactKey(String term)
+	{
+		return "impact:"+term;
+	}
+	//key for the index-time score bound of a term
+	private byte[] boundKey(String term)
+	{
+		return ("maxscore:"+term).getBytes(StandardCharsets.UTF_8);
+	}
 	/**
 	 * Looks up a search term and returns a set top 20 URLs.
 	 *
@@ -57,22 +127,223 @@ public class JedisIndex {
 	public Set<Tuple> getURLs(String term, int start, int end)
 	{
 		String termKey = termURLs(term);
-		Set<Tuple> set = jedis.zrevrangeWithScores(termKey, start, end);
-		return set;
+		try (Jedis jedis = resource()) {
+			return jedis.zrevrangeWithScores(termKey, start, end);
+		}
+	}
+	/**
+	 * Looks up a search term and returns its postings ranked from start to
+	 * end, both inclusive.
+	 */
+	public PostingList getPostings(String term, int start, int end)
+	{
+		return PostingList.of(getURLs(term, start, end), documents);
+	}
+	/**
+	 * Returns the postings of a term from start to end, both inclusive,
+	 * ranked by impact and with impacts in the place of frequencies.
+	 */
+	public PostingList getImpacts(String term, int start, int end)
+	{
+		try (Jedis jedis = resource()) {
+			return PostingList.of(jedis.zrevrangeWithScores(impactKey(term), start, end), documents);
+		}
+	}
+	/**
+	 * Whether every term has impacts, in one pipelined round-trip.
+	 */
+	public boolean hasImpacts(Collection<String> terms)
+	{
+		List<Response<Boolean>> exists = new ArrayList<>();
+		try (Jedis jedis = resource()) {
+			Pipeline pipeline = jedis.pipelined();
+			for (String term : terms) {
+				exists.add(pipeline.exists(impactKey(term)));
+			}
+			pipeline.sync();
+		}
+
+		for (Response<Boolean> response : exists) {
+			if (!response.get()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Returns the stamp stored with the impacts of each term.
+	 *
+	 * @return stamps in the same order as terms, null where missing
+	 */
+	public List<String> getImpactStamps(List<String> terms)
+	{
+		if (terms.isEmpty()) {
+			return new ArrayList<>();
+		}
+		try (Jedis jedis = resource()) {
+			return jedis.hmget(IMPACT_STAMPS, terms.toArray(new String[terms.size()]));
+		}
+	}
+	/**
+	 * Replaces the impacts of a term, atomically for readers.
+	 *
+	 * @param term stemmed term
+	 * @param impacts postings with impacts in the place of frequencies
+	 * @param stamp state of the index the impacts were computed from
+	 */
+	public void putImpacts(String term, PostingList impacts, String stamp)
+	{
+		String staging = "impact_staging:"+term;
+		int batch = 1000;
+
+		try (Jedis jedis = resource()) {
+			Pipeline pipeline = jedis.pipelined();
+			pipeline.del(staging);
+			for (int start = 0; start < impacts.size(); start += batch) {
+				Map<String, Double> members = new HashMap<>();
+				for (int i = start; i < impacts.size() && i < start + batch; i++) {
+					members.put(Long.toString(documents.id(impacts.getDocument(i))), (double) impacts.getFrequency(i));
+				}
+				pipeline.zadd(staging, members);
+			}
+			if (impacts.size() > 0) {
+				pipeline.rename(staging, impactKey(term));
+			} else {
+				pipeline.del(impactKey(term));
+			}
+			pipeline.hset(IMPACT_STAMPS, term, stamp);
+			pipeline.sync();
+		}
+	}
+	/**
+	 * Looks up the frequency of every term in the given documents, in one
+	 * pipelined round-trip.
+	 *
+	 * @param terms stemmed terms
+	 * @param ordinals document ordinals
+	 * @return map from term to the postings of those documents containing it
+	 */
+	public Map<String, PostingList> getPostings(Collection<String> terms, int[] ordinals)
+	{
+		return lookup(terms, ordinals, this::termURLs);
+	}
+	/**
+	 * Looks up the impact of every term in the given documents, in one
+	 * pipelined round-trip.
+	 *
+	 * @param terms stemmed terms
+	 * @param ordinals document ordinals
+	 * @return map from term to the impacts of those documents containing it
+	 */
+	public Map<String, PostingList> getImpacts(Collection<String> terms, int[] ordinals)
+	{
+		return lookup(terms, ordinals, this::impactKey);
+	}
+	// scores of the given members in the sorted set of each term
+	private Map<String, PostingList> lookup(Collection<String> terms, int[] ordinals, Function<String, String> key)
+	{
+		Map<String, List<Response<Double>>> responses = new LinkedHashMap<>();
+
+		String[] members = new String[ordinals.length];
+		for (int i = 0; i < ordinals.length; i++) {
+			members[i] = Long.toString(documents.id(ordinals[i]));
+		}
+
+		try (Jedis jedis = resource()) {
+			Pipeline pipeline = jedis.pipelined();
+			for (String term : terms) {
+				String termKey = key.apply(term);
+				List<Response<Double>> scores = new ArrayList<>(members.length);
+				for (String member : members) {
+					scores.add(pipeline.zscore(termKey, member));
+				}
+				responses.put(term, scores);
+			}
+			pipeline.sync();
+		}
+
+		Map<String, PostingList> postings = new LinkedHashMap<>();
+		for (Map.Entry<String, List<Response<Double>>> entry : responses.entrySet()) {
+			int[] found = new int[ordinals.length];
+			int[] frequencies = new int[ordinals.length];
+			int count = 0;
+
+			for (int i = 0; i < ordinals.length; i++) {
+				Double score = entry.getValue().get(i).get();
+				if (score != null) {
+					found[count] = ordinals[i];
+					frequencies[count++] = score.intValue();
+				}
+			}
+
+			postings.put(entry.getKey(), new PostingList(found, frequencies).slice(0, count));
+		}
+
+		return postings;
 	}
 	public int numberOfDocsContainingTerm(String term)
 	{
 		String key = termURLs(term);
-		return jedis.zcard(key).intValue();
+		try (Jedis jedis = resource()) {
+			return jedis.zcard(key).intValue();
+		}
+	}
+	/**
+	 * Looks up the number of documents containing each term, pipelined in
+	 * batches so large vocabularies cost a handful of round-trips.
+	 *
+	 * @param terms stemmed terms
+	 * @return document frequencies in the same order as terms
+	 */
+	public int[] numberOfDocsContainingTerms(List<String> terms)
+	{
+		int[] frequencies = new int[terms.size()];
+		int batch = 10000;
+
+		try (Jedis jedis = resource()) {
+			for (int start = 0; start < terms.size(); start += batch) {
+				int end = Math.min(start + batch, terms.size());
+				List<Response<Long>> responses = new ArrayList<>(end - start);
+
+				Pipeline pipeline = jedis.pipelined();
+				for (int i = start; i < end; i++) {
+					responses.add(pipeline.zcard(termURLs(terms.get(i))));
+				}
+				pipeline.sync();
+
+				for (int i = start; i < end; i++) {
+					frequencies[i] = responses.get(i - start).get().intValue();
+				}
+			}
+		}
+
+		return frequencies;
+	}
+	/**
+	 * Reads one page of the set of every indexed term.
+	 *
+	 * @param cursor "0" to start a scan, or the cursor returned by the last page
+	 * @param count number of members to ask Redis for
+	 * @return the terms, with the cursor of the next page, which is "0" once the scan is done
+	 */
+	public ScanResult<String> scanTerms(String cursor, int count)
+	{
+		try (Jedis jedis = resource()) {
+			return jedis.sscan("terms", cursor, new ScanParams().count(count));
+		}
 	}
 	public int totalTermsIndexed()
 	{
-		return new Integer(jedis.get("total_words"));
+		try (Jedis jedis = resource()) {
+			return new Integer(jedis.get("total_words"));
+		}
 	}
 	public int termsIndexedOnPage(String url)
 	{
 		String key = urlSet(url);
-		return new Integer(jedis.get(key));
+		try (Jedis jedis = resource()) {
+			return new Integer(jedis.get(key));
+		}
 	}
 	public Double getAverageDocLength()
 	{
@@ -85,6 +356,231 @@ public class JedisIndex {
 		return ((double)totalTermsIndexed()) / ((double)total);
 	}
 
+	/**
+	 * Loads every statistic the ranking functions need to score the given postings in one
+	 * pipelined round-trip: the corpus totals, the document frequency of each
+	 * term and the length of every candidate document.
+	 *
+	 * @param postings map from term to the postings fetched for it
+	 * @return snapshot of the statistics
+	 */
+	public IndexStatistics getStatistics(Map<String, PostingList> postings)
+	{
+		int[] candidates = distinctDocuments(postings.values());
+
+		Response<String> totalDocuments;
+		Response<String> totalWords;
+		Map<String, Response<Long>> frequencies = new HashMap<>();
+		Response<List<String>> lengths = null;
+
+		try (Jedis jedis = resource()) {
+			Pipeline pipeline = jedis.pipelined();
+			totalDocuments = pipeline.get("total_documents");
+			totalWords = pipeline.get("total_words");
+
+			for (String term : postings.keySet()) {
+				frequencies.put(term, pipeline.zcard(termURLs(term)));
+			}
+
+			if (candidates.length > 0) {
+				String[] keys = new String[candidates.length];
+				for (int i = 0; i < candidates.length; i++) {
+					keys[i] = urlSet(Long.toString(documents.id(candidates[i])));
+				}
+				lengths = pipeline.mget(keys);
+			}
+			pipeline.sync();
+		}
+
+		Map<String, Integer> documentFrequency = new HashMap<>();
+		for (Map.Entry<String, Response<Long>> entry : frequencies.entrySet()) {
+			documentFrequency.put(entry.getKey(), entry.getValue().get().intValue());
+		}
+
+		int[] documentLength = new int[candidates.length];
+		if (lengths != null) {
+			List<String> values = lengths.get();
+			for (int i = 0; i < candidates.length; i++) {
+				String value = values.get(i);
+				documentLength[i] = value == null ? 0 : Integer.parseInt(value);
+			}
+		}
+
+		int total = totalDocuments.get() == null ? 0 : Integer.parseInt(totalDocuments.get());
+		double average = 0.0;
+		if (total != 0 && totalWords.get() != null) {
+			average = Double.parseDouble(totalWords.get()) / total;
+		}
+
+		return new IndexStatistics(total, average, documentFrequency, candidates, documentLength);
+	}
+	// ordinals of every document in the postings, ascending and without repeats
+	private static int[] distinctDocuments(Collection<PostingList> postings)
+	{
+		int count = 0;
+		for (PostingList list : postings) {
+			count += list.size();
+		}
+
+		int[] all = new int[count];
+		int n = 0;
+		for (PostingList list : postings) {
+			for (int i = 0; i < list.size(); i++) {
+				all[n++] = list.getDocument(i);
+			}
+		}
+		Arrays.sort(all);
+
+		int distinct = 0;
+		for (int i = 0; i < all.length; i++) {
+			if (i == 0 || all[i] != all[i - 1]) {
+				all[distinct++] = all[i];
+			}
+		}
+		return Arrays.copyOf(all, distinct);
+	}
+
+	/**
+	 * Returns the number of terms indexed on each document.
+	 *
+	 * @param ordinals document ordinals
+	 * @return lengths in the same order as ordinals, 0 where unknown
+	 */
+	public int[] getDocumentLengths(int[] ordinals)
+	{
+		int[] lengths = new int[ordinals.length];
+		if (ordinals.length == 0) {
+			return lengths;
+		}
+
+		String[] keys = new String[ordinals.length];
+		for (int i = 0; i < ordinals.length; i++) {
+			keys[i] = urlSet(Long.toString(documents.id(ordinals[i])));
+		}
+
+		List<String> values;
+		try (Jedis jedis = resource()) {
+			values = jedis.mget(keys);
+		}
+		for (int i = 0; i < ordinals.length; i++) {
+			lengths[i] = values.get(i) == null ? 0 : Integer.parseInt(values.get(i));
+		}
+
+		return lengths;
+	}
+	/**
+	 * Returns the stored score bounds of the given terms.
+	 *
+	 * @param terms stemmed terms
+	 * @return map from term to its bound, for the terms that have one
+	 */
+	public Map<String, TermBound> getTermBounds(Collection<String> terms)
+	{
+		Map<String, TermBound> bounds = new HashMap<>();
+		if (terms.isEmpty()) {
+			return bounds;
+		}
+
+		List<String> termList = new ArrayList<>(terms);
+		List<byte[]> values;
+		try (Jedis jedis = resource()) {
+			values = jedis.mget(termList.stream().map(this::boundKey).toArray(byte[][]::new));
+		}
+
+		for (int i = 0; i < termList.size(); i++) {
+			TermBound bound = values.get(i) == null ? null : TermBound.decode(values.get(i));
+			if (bound != null) {
+				bounds.put(termList.get(i), bound);
+			}
+		}
+
+		return bounds;
+	}
+	public void putTermBound(String term, TermBound bound)
+	{
+		try (Jedis jedis = resource()) {
+			jedis.set(boundKey(term), bound.encode());
+		}
+	}
+	/**
+	 * Returns the stored snippet indexes of the given documents.
+	 *
+	 * @param ids document ids
+	 * @return encoded indexes in the same order as ids, null where missing
+	 */
+	public List<byte[]> getSnippetIndexes(long[] ids)
+	{
+		if (ids.length == 0) {
+			return new ArrayList<>();
+		}
+
+		byte[][] keys = new byte[ids.length][];
+		for (int i = 0; i < ids.length; i++) {
+			keys[i] = snippetKey(ids[i]);
+		}
+
+		List<byte[]> indexes;
+		try (Jedis jedis = resource()) {
+			indexes = jedis.mget(keys);
+		}
+
+		for (byte[] index : indexes) {
+			if (index != null) {
+				QueryTrace.bytesLoaded(index.length);
+			}
+		}
+		return indexes;
+	}
+	/**
+	 * Stores snippet indexes and records the highest document id covered.
+	 *
+	 * @param indexes map from document id to encoded index
+	 * @param lastId id up to which every document has been indexed
+	 */
+	public void putSnippetIndexes(Map<Long, byte[]> indexes, long lastId)
+	{
+		try (Jedis jedis = resource()) {
+			Pipeline pipeline = jedis.pipelined();
+			for (Map.Entry<Long, byte[]> entry : indexes.entrySet()) {
+				pipeline.set(snippetKey(entry.getKey()), entry.getValue());
+			}
+			pipeline.set("snippet:last_id", Long.toString(lastId));
+			pipeline.sync();
+		}
+	}
+	/**
+	 * Returns the id up to which documents have snippet indexes.
+	 */
+	public long getLastSnippetIndexed()
+	{
+		String last;
+		try (Jedis jedis = resource()) {
+			last = jedis.get("snippet:last_id");
+		}
+		return last == null ? 0 : Long.parseLong(last);
+	}
+
+	/**
+	 * Returns the id up to which documents have been read for completions.
+	 */
+	public long getLastCompletionRead()
+	{
+		String last;
+		try (Jedis jedis = resource()) {
+			last = jedis.get("completion:last_id");
+		}
+		return last == null ? 0 : Long.parseLong(last);
+	}
+	/**
+	 * Records the id up to which documents have been read for completions.
+	 */
+	public void setLastCompletionRead(long lastId)
+	{
+		try (Jedis jedis = resource()) {
+			jedis.set("completion:last_id", Long.toString(lastId));
+		}
+	}
+
 	/**
 	 * Looks up a term and returns a map from URL to count.
 	 *
@@ -100,8 +596,9 @@ public class JedisIndex {
 	 * @throws IOException
 	 */
 	public static void main(String[] args) throws IOException {
-		Jedis jedis = new Jedis("localhost",6379);
-		System.out.println("Server is running: "+jedis.ping());
+		try (Jedis jedis = new Jedis("localhost",6379)) {
+			System.out.println("Server is running: "+jedis.ping());
+		}
 	}
 
 
@@ -1,59 +1,62 @@
 package codeu.unnamed.frontend;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
-
-import redis.clients.jedis.Tuple;
-
 public class MapBM<T>
 {
-    protected Map<String,Double> map;
-    protected JedisIndex index;
-    protected String term;
-    private Integer termWeight;
-    private final double K1 = 1.2;
-    private final double K2 = 100;
+    protected PostingList postings;
+    // score of each posting, in posting order
+    protected double[] scores;
+    protected IndexStatistics stats;
+    protected RankingFunction.TermScorer scorer;
 
-    public MapBM(Set<Tuple> old, JedisIndex index, String term, Integer termWeight)
+    /**
+     * Scores the postings of a term with BM25.
+     */
+    public MapBM(PostingList old, IndexStatistics stats, String term, Integer termWeight)
     {
-        this.index = index;
-        this.term = term;
-        this.termWeight = termWeight;
-        this.map = convert(old);
+        this(old, stats, Bm25.DEFAULT.prepare(stats, term, termWeight));
     }
-    public Map<String, Double> getMap()
+
+    /**
+     * Scores the postings of a term with a scorer prepared for it.
+     *
+     * @param stats statistics of the query round, or null if the scorer
+     *        ignores document lengths
+     */
+    public MapBM(PostingList old, IndexStatistics stats, RankingFunction.TermScorer scorer)
     {
-        return this.map;
+        this.stats = stats;
+        this.scorer = scorer;
+        this.postings = old;
+        this.scores = convert(old);
     }
 
     /**
-     * Takes in a mapping from documents to term frequency and returns a mapping
-     * from documents to BM25 relevance score
+     * Takes in the postings of the term and returns the relevance score of
+     * each document, in the same order, scored as one block.
      */
-    public Map<String, Double> convert(Set<Tuple> old) {
-        return old.stream().collect(Collectors.toMap(Tuple::getElement, this::getSingleRelevance));
+    public double[] convert(PostingList old) {
+        double[] relevance = new double[old.size()];
+        int[] lengths = stats == null ? new int[old.size()] : stats.termsIndexedOnPages(old);
+        scorer.score(old.copyFrequencies(), lengths, relevance, old.size());
+        return relevance;
     }
 
-    public double getSingleRelevance(Tuple entry)
+    /**
+     * Adds the score of every document to the query's totals.
+     */
+    public void addTo(ScoreAccumulator totals)
     {
-        String url = entry.getElement();
-
-        double averageDocLength = index.getAverageDocLength();
-        int docLength = index.termsIndexedOnPage(url);
-        int termFrequency = (int)entry.getScore();
-
-        double k = K1*(0.25+(0.75*(docLength/averageDocLength)));
-        double a = (0.5/0.5);
-        int numberOfDocsContainingTerm = index.numberOfDocsContainingTerm(term);
-        int totalDocuments = index.getTotalDocuments();
-        double b = ((numberOfDocsContainingTerm+0.5)/(totalDocuments-numberOfDocsContainingTerm+0.5));
-        double c = ((1.2+1)*(termFrequency))/(k+termFrequency);
-        double d = (double)(((100+1)*(termWeight))/(100+termWeight));//
-        double result = ((Math.log(a/b))*c*d)*100;
+        for (int i = 0; i < scores.length; i++) {
+            totals.add(postings.getDocument(i), scores[i]);
+        }
+    }
 
-        return result;
+    /**
+     * Scores one posting from the query's statistics snapshot; no I/O happens here.
+     */
+    public double getSingleRelevance(int document, int termFrequency)
+    {
+        return scorer.score(termFrequency, stats == null ? 0 : stats.termsIndexedOnPage(document));
     }
 
 }
@@ -0,0 +1,213 @@
+package codeu.unnamed.frontend;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Near-cache of the best ranked postings of hot terms, in front of Redis.
+ *
+ * Each entry holds the first postings of a term, ranked by frequency or by
+ * impact, as a {@link PostingList} and grows when a deeper range is asked
+ * for, so repeated and paged queries on common terms are served without a
+ * network round-trip. Entries are evicted least recently used first once
+ * their total size passes a byte budget, and the whole cache is dropped when
+ * the index generation changes. Entries are keyed by the id of their term
+ * in the index's {@link TermDictionary}, and only terms with postings get
+ * one.
+ */
+@Component
+public class PostingCache {
+
+	private JedisIndex index;
+	// maps from term id and ranking to entry
+	private Map<Long, Entry> entries;
+	private long maxBytes;
+	private long bytes;
+
+	private LongSupplier generationSource;
+	private long checkIntervalMillis;
+	private volatile long generation;
+	private volatile long lastCheck;
+
+	private AtomicLong hits = new AtomicLong();
+	private AtomicLong misses = new AtomicLong();
+	private AtomicLong evictions = new AtomicLong();
+	private AtomicLong invalidations = new AtomicLong();
+
+	// postings of a term from the top, and whether they are all of them
+	private static class Entry {
+		final PostingList postings;
+		final boolean complete;
+
+		Entry(PostingList postings, boolean complete)
+		{
+			this.postings = postings;
+			this.complete = complete;
+		}
+		boolean covers(int end)
+		{
+			return complete || postings.size() > end;
+		}
+	}
+
+	@Autowired
+	public PostingCache(JedisIndex index,
+			@Value("${search.posting-cache.max-bytes:67108864}") long maxBytes,
+			@Value("${search.cache.generation-check-ms:1000}") long checkIntervalMillis)
+	{
+		this(index, index::getGeneration, maxBytes, checkIntervalMillis);
+	}
+	/**
+	 * Constructor.
+	 *
+	 * @param index index the postings are read from
+	 * @param generationSource reads the current index generation
+	 * @param maxBytes approximate heap size the entries may take
+	 * @param checkIntervalMillis time between two reads of the generation
+	 */
+	public PostingCache(JedisIndex index, LongSupplier generationSource, long maxBytes, long checkIntervalMillis)
+	{
+		this.index = index;
+		this.generationSource = generationSource;
+		this.maxBytes = maxBytes;
+		this.checkIntervalMillis = checkIntervalMillis;
+		this.generation = Long.MIN_VALUE;
+		this.lastCheck = 0;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+	}
+	/**
+	 * Returns the postings of a term ranked from start to end, both
+	 * inclusive, like {@link JedisIndex#getURLs(String, int, int)}. Only the
+	 * part not cached yet is read from Redis.
+	 */
+	public PostingList get(String term, int start, int end)
+	{
+		return get(term, false, start, end);
+	}
+	/**
+	 * Returns the postings of a term ranked from start to end, both
+	 * inclusive, with term frequencies or, if impacts is set, ranked by
+	 * impact as by {@link JedisIndex#getImpacts(String, int, int)}.
+	 */
+	public PostingList get(String term, boolean impacts, int start, int end)
+	{
+		checkGeneration();
+		long fetchGeneration = generation;
+
+		TermDictionary dictionary = index.getTermDictionary();
+		int termId = dictionary.find(term);
+
+		Entry entry = null;
+		if (termId >= 0) {
+			synchronized (entries) {
+				entry = entries.get(key(termId, impacts));
+			}
+		}
+
+		if (entry != null && entry.covers(end)) {
+			hits.incrementAndGet();
+			return entry.postings.slice(start, end + 1);
+		}
+		misses.incrementAndGet();
+
+		// concurrent misses on one term may both fetch; the longer result is kept
+		int cached = entry == null ? 0 : entry.postings.size();
+		PostingList fetched = impacts
+				? index.getImpacts(term, cached, end) : index.getPostings(term, cached, end);
+		PostingList postings = entry == null ? fetched : entry.postings.append(fetched);
+		Entry grown = new Entry(postings, fetched.size() < end - cached + 1);
+
+		// terms missing from the index are neither given an id nor cached
+		if (postings.size() == 0) {
+			return postings;
+		}
+		long key = key(dictionary.add(term), impacts);
+
+		synchronized (entries) {
+			// don't keep postings read before an invalidation
+			if (fetchGeneration == generation) {
+				put(key, grown);
+			}
+		}
+
+		return postings.slice(start, end + 1);
+	}
+	private static long key(int termId, boolean impacts)
+	{
+		return (long) termId << 1 | (impacts ? 1 : 0);
+	}
+	// callers hold the monitor of entries
+	private void put(long key, Entry entry)
+	{
+		Entry old = entries.get(key);
+		if (old != null) {
+			if (old.postings.size() >= entry.postings.size()) {
+				return;
+			}
+			bytes -= old.postings.bytes();
+		}
+
+		entries.put(key, entry);
+		bytes += entry.postings.bytes();
+
+		while (bytes > maxBytes && !entries.isEmpty()) {
+			Map.Entry<Long, Entry> eldest = entries.entrySet().iterator().next();
+			bytes -= eldest.getValue().postings.bytes();
+			entries.remove(eldest.getKey());
+			evictions.incrementAndGet();
+		}
+	}
+	public void clear()
+	{
+		synchronized (entries) {
+			entries.clear();
+			bytes = 0;
+		}
+	}
+	private void checkGeneration()
+	{
+		long now = System.currentTimeMillis();
+		if (now - lastCheck < checkIntervalMillis) {
+			return;
+		}
+		lastCheck = now;
+
+		long current = generationSource.getAsLong();
+		if (current != generation) {
+			if (generation != Long.MIN_VALUE) {
+				invalidations.incrementAndGet();
+			}
+			synchronized (entries) {
+				generation = current;
+				entries.clear();
+				bytes = 0;
+			}
+		}
+	}
+	public Map<String, Object> getStats()
+	{
+		Map<String, Object> stats = new LinkedHashMap<>();
+		long hitCount = hits.get();
+		long missCount = misses.get();
+
+		synchronized (entries) {
+			stats.put("terms", entries.size());
+			stats.put("bytes", bytes);
+		}
+		stats.put("maxBytes", maxBytes);
+		stats.put("hits", hitCount);
+		stats.put("misses", missCount);
+		stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+		stats.put("evictions", evictions.get());
+		stats.put("invalidations", invalidations.get());
+		stats.put("generation", generation);
+
+		return stats;
+	}
+}
@@ -0,0 +1,114 @@
+package codeu.unnamed.frontend;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import redis.clients.jedis.Tuple;
+
+/**
+ * Postings of one term, best ranked first, as parallel primitive arrays of
+ * document ordinals, see {@link DocumentDictionary}, and weighted term
+ * frequencies.
+ *
+ * Immutable. A slice shares the arrays of the list it was taken from.
+ */
+public class PostingList {
+
+	private static final int[] NO_DOCUMENTS = new int[0];
+	private static final int[] NO_FREQUENCIES = new int[0];
+
+	public static final PostingList EMPTY = new PostingList(NO_DOCUMENTS, NO_FREQUENCIES, 0, 0);
+
+	private final int[] documents;
+	private final int[] frequencies;
+	private final int from;
+	private final int to;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param documents document ordinals
+	 * @param frequencies weighted term frequency in each document
+	 */
+	public PostingList(int[] documents, int[] frequencies)
+	{
+		this(documents, frequencies, 0, documents.length);
+	}
+	private PostingList(int[] documents, int[] frequencies, int from, int to)
+	{
+		this.documents = documents;
+		this.frequencies = frequencies;
+		this.from = from;
+		this.to = to;
+	}
+	/**
+	 * Decodes postings as returned by a ZREVRANGE WITHSCORES, whose members
+	 * are document ids, into ordinals of the given dictionary.
+	 */
+	public static PostingList of(Set<Tuple> tuples, DocumentDictionary dictionary)
+	{
+		int[] documents = new int[tuples.size()];
+		int[] frequencies = new int[tuples.size()];
+
+		int i = 0;
+		for (Tuple tuple : tuples) {
+			documents[i] = dictionary.ordinal(Long.parseLong(tuple.getElement()));
+			frequencies[i] = (int) tuple.getScore();
+			i++;
+		}
+
+		return new PostingList(documents, frequencies);
+	}
+	public int size()
+	{
+		return to - from;
+	}
+	/**
+	 * Returns the ordinal of the i-th document.
+	 */
+	public int getDocument(int i)
+	{
+		return documents[from + i];
+	}
+	public int getFrequency(int i)
+	{
+		return frequencies[from + i];
+	}
+	/**
+	 * Returns a copy of the frequencies, in posting order.
+	 */
+	public int[] copyFrequencies()
+	{
+		return Arrays.copyOfRange(frequencies, from, to);
+	}
+	/**
+	 * Returns the postings from index start (inclusive) to end (exclusive),
+	 * clamped to the list.
+	 */
+	public PostingList slice(int start, int end)
+	{
+		start = Math.min(Math.max(start, 0), size());
+		end = Math.min(Math.max(end, start), size());
+		return new PostingList(documents, frequencies, from + start, from + end);
+	}
+	/**
+	 * Returns these postings followed by the given ones.
+	 */
+	public PostingList append(PostingList next)
+	{
+		int[] joinedDocuments = Arrays.copyOfRange(documents, from, to + next.size());
+		int[] joinedFrequencies = Arrays.copyOfRange(frequencies, from, to + next.size());
+
+		System.arraycopy(next.documents, next.from, joinedDocuments, size(), next.size());
+		System.arraycopy(next.frequencies, next.from, joinedFrequencies, size(), next.size());
+
+		return new PostingList(joinedDocuments, joinedFrequencies);
+	}
+	/**
+	 * Returns the approximate heap footprint of the postings.
+	 */
+	public long bytes()
+	{
+		return 8L * documents.length + 64;
+	}
+}
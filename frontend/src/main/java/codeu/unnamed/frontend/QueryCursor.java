@@ -0,0 +1,149 @@
+package codeu.unnamed.frontend;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merged state of a query that has been ranked down to some posting depth.
+ *
+ * Every document seen in the postings read so far has its complete score
+ * here. The threshold bounds the score of every document not seen yet, so
+ * once the k-th best score reaches it the top k are final. Fetching the next
+ * page only has to read each term's postings past the depth already merged
+ * here, instead of running the whole query again. Callers must hold the
+ * cursor's monitor while advancing or reading it.
+ */
+public class QueryCursor {
+
+	private UserQuery query;
+	// maps from term to number of its postings merged so far
+	private Map<String, Integer> depth;
+	// terms whose postings have all been merged
+	private Set<String> exhausted;
+	// maps from term to frequency, or impact, of its last posting read, which bounds the rest
+	private Map<String, Integer> lastFrequency;
+	// ranking the postings are read for, decided with the first postings
+	private RankingFunction ranking;
+	// index-time bounds of the terms, loaded with the first postings
+	private Map<String, TermBound> bounds;
+	private double threshold;
+	private ScoreAccumulator results;
+	private long created;
+
+	/**
+	 * Constructor.
+	 */
+	public QueryCursor(UserQuery query)
+	{
+		this.created = System.currentTimeMillis();
+		this.query = query;
+		this.depth = new HashMap<>();
+		this.exhausted = new HashSet<>();
+		this.lastFrequency = new HashMap<>();
+		this.bounds = null;
+		this.threshold = Double.POSITIVE_INFINITY;
+		this.results = new ScoreAccumulator();
+	}
+	public UserQuery getQuery()
+	{
+		return this.query;
+	}
+	public boolean isOlderThan(long millis)
+	{
+		return System.currentTimeMillis() - this.created > millis;
+	}
+	public int getDepth(String term)
+	{
+		return this.depth.getOrDefault(term, 0);
+	}
+	public boolean isExhausted(String term)
+	{
+		return this.exhausted.contains(term);
+	}
+	/**
+	 * Whether every term has been merged down to the given depth.
+	 */
+	public boolean covers(int target)
+	{
+		for (Map.Entry<String, Integer> entry : query.getQueries()) {
+			String term = entry.getKey();
+			if (!isExhausted(term) && getDepth(term) < target) {
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Records that the next postings of a term have been merged.
+	 *
+	 * @param term
+	 * @param requested number of postings asked for
+	 * @param fetched postings actually returned
+	 */
+	public void advance(String term, int requested, PostingList fetched)
+	{
+		this.depth.put(term, getDepth(term) + fetched.size());
+		if (fetched.size() > 0) {
+			this.lastFrequency.put(term, fetched.getFrequency(fetched.size() - 1));
+		}
+		if (fetched.size() < requested) {
+			this.exhausted.add(term);
+		}
+	}
+	/**
+	 * Returns the frequency, or impact, of the last posting read of a term,
+	 * or null if none has been read.
+	 */
+	public Integer getLastFrequency(String term)
+	{
+		return this.lastFrequency.get(term);
+	}
+	/**
+	 * Returns the ranking actually used, which is the query's unless a term
+	 * had no impacts yet, or null before the first postings are read.
+	 */
+	public RankingFunction getRanking()
+	{
+		return this.ranking;
+	}
+	public void setRanking(RankingFunction ranking)
+	{
+		this.ranking = ranking;
+	}
+	public Map<String, TermBound> getBounds()
+	{
+		return this.bounds;
+	}
+	public void setBounds(Map<String, TermBound> bounds)
+	{
+		this.bounds = bounds;
+	}
+	/**
+	 * Sets the highest score a document not seen yet could have.
+	 */
+	public void setThreshold(double threshold)
+	{
+		this.threshold = threshold;
+	}
+	/**
+	 * Whether the k best documents are known for certain: either every
+	 * posting has been read, or the k-th best score reaches the threshold.
+	 */
+	public boolean isSettled(int k)
+	{
+		if (covers(Integer.MAX_VALUE)) {
+			return true;
+		}
+		return this.results.size() >= k && this.results.kthScore(k) >= this.threshold;
+	}
+	public void merge(ScoreAccumulator other)
+	{
+		this.results.addAll(other);
+	}
+	public ScoreAccumulator getResults()
+	{
+		return this.results;
+	}
+}
@@ -0,0 +1,110 @@
+package codeu.unnamed.frontend;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded executor that runs the per-term work of a query concurrently.
+ *
+ * Every query gets a deadline; tasks that have not finished by then are
+ * cancelled and left out of the result, so a single slow term only costs
+ * its own contribution to the ranking.
+ */
+@Component
+public class QueryExecutor {
+	private static final Logger log = LoggerFactory.getLogger(QueryExecutor.class);
+
+	private ThreadPoolExecutor executor;
+	private long deadlineMillis;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param threads maximum number of terms worked on at the same time
+	 * @param queueSize number of tasks allowed to wait for a thread
+	 * @param deadlineMillis time budget of a whole query
+	 */
+	@Autowired
+	public QueryExecutor(@Value("${search.executor.threads:16}") int threads,
+			@Value("${search.executor.queue-size:256}") int queueSize,
+			@Value("${search.deadline-ms:500}") long deadlineMillis)
+	{
+		AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = (runnable) -> {
+			Thread thread = new Thread(runnable, "query-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+
+		// when saturated the request thread does the work itself instead of failing
+		this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueSize), factory, new ThreadPoolExecutor.CallerRunsPolicy());
+		this.executor.allowCoreThreadTimeOut(true);
+		this.deadlineMillis = deadlineMillis;
+	}
+
+	/**
+	 * Returns the System.nanoTime() by which a query starting now must finish.
+	 */
+	public long deadline()
+	{
+		return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+	}
+
+	/**
+	 * Runs all tasks concurrently and waits for them until the deadline.
+	 *
+	 * @param tasks map from key to the task computing its value
+	 * @param deadline System.nanoTime() after which unfinished tasks are dropped
+	 * @return map from key to value for every task that completed in time
+	 */
+	public <K, V> Map<K, V> invokeAll(Map<K, Callable<V>> tasks, long deadline)
+	{
+		Map<K, Future<V>> futures = new LinkedHashMap<>();
+		for (Map.Entry<K, Callable<V>> entry : tasks.entrySet()) {
+			futures.put(entry.getKey(), executor.submit(QueryTrace.propagate(entry.getValue())));
+		}
+
+		Map<K, V> results = new LinkedHashMap<>();
+		for (Map.Entry<K, Future<V>> entry : futures.entrySet()) {
+			Future<V> future = entry.getValue();
+			try {
+				long remaining = deadline - System.nanoTime();
+				results.put(entry.getKey(), future.get(Math.max(remaining, 0), TimeUnit.NANOSECONDS));
+			} catch (TimeoutException e) {
+				future.cancel(true);
+				log.warn("Dropping {} after missing the query deadline", entry.getKey());
+			} catch (ExecutionException e) {
+				log.warn("Dropping {} after it failed", entry.getKey(), e.getCause());
+			} catch (InterruptedException e) {
+				future.cancel(true);
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return results;
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		executor.shutdownNow();
+	}
+}
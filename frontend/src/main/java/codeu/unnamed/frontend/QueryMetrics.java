@@ -0,0 +1,121 @@
+package codeu.unnamed.frontend;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Latency distribution of every stage of /query and /complete, and of the
+ * Redis calls, SQL calls and bytes each request needed, since startup.
+ *
+ * Values are recorded into HdrHistogram recorders, which is wait-free for
+ * the request threads; readers fold what was recorded since the last read
+ * into a running histogram. Requests slower than a threshold are also
+ * logged with their breakdown.
+ */
+@Component
+public class QueryMetrics {
+	private static final Logger log = LoggerFactory.getLogger(QueryMetrics.class);
+
+	// decimal digits of precision kept by the histograms
+	private static final int SIGNIFICANT_DIGITS = 2;
+
+	private Map<String, Distribution> distributions = new ConcurrentHashMap<>();
+	private long slowQueryNanos;
+
+	// values recorded for one metric
+	private static class Distribution {
+		final String unit;
+		final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+		final LongAdder sum = new LongAdder();
+		Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+
+		Distribution(String unit)
+		{
+			this.unit = unit;
+		}
+		void record(long value)
+		{
+			recorder.recordValue(value);
+			sum.add(value);
+		}
+		synchronized Map<String, Object> getStats()
+		{
+			total.add(recorder.getIntervalHistogram());
+
+			Map<String, Object> stats = new LinkedHashMap<>();
+			stats.put("unit", unit);
+			stats.put("count", total.getTotalCount());
+			stats.put("sum", sum.sum());
+			stats.put("mean", total.getMean());
+			stats.put("p50", total.getValueAtPercentile(50));
+			stats.put("p90", total.getValueAtPercentile(90));
+			stats.put("p99", total.getValueAtPercentile(99));
+			stats.put("p999", total.getValueAtPercentile(99.9));
+			stats.put("max", total.getMaxValue());
+			return stats;
+		}
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param slowQueryMillis time past which a request is logged, 0 to log none
+	 */
+	@Autowired
+	public QueryMetrics(@Value("${search.metrics.slow-query-ms:1000}") long slowQueryMillis)
+	{
+		this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+	}
+	/**
+	 * Ends a request's trace and records it.
+	 */
+	public void record(QueryTrace trace)
+	{
+		trace.end();
+		String prefix = trace.getEndpoint() + ".";
+
+		distribution(prefix + "total", "us").record(TimeUnit.NANOSECONDS.toMicros(trace.getTotalNanos()));
+		for (QueryTrace.Stage stage : QueryTrace.Stage.values()) {
+			long nanos = trace.getStageNanos(stage);
+			if (nanos > 0) {
+				String name = prefix + stage.name().toLowerCase(Locale.ROOT);
+				distribution(name, "us").record(TimeUnit.NANOSECONDS.toMicros(nanos));
+			}
+		}
+		distribution(prefix + "redisCalls", "calls").record(trace.getRedisCalls());
+		distribution(prefix + "sqlCalls", "calls").record(trace.getSqlCalls());
+		distribution(prefix + "bytesLoaded", "bytes").record(trace.getBytesLoaded());
+
+		if (slowQueryNanos > 0 && trace.getTotalNanos() > slowQueryNanos) {
+			log.warn("Slow {} \"{}\": {}", trace.getEndpoint(), trace.getQuery(), trace);
+		}
+	}
+	private Distribution distribution(String name, String unit)
+	{
+		return distributions.computeIfAbsent(name, (key) -> new Distribution(unit));
+	}
+	/**
+	 * Returns the distribution of every metric recorded so far, by name.
+	 */
+	public Map<String, Object> getStats()
+	{
+		Map<String, Object> stats = new TreeMap<>();
+		for (Map.Entry<String, Distribution> entry : distributions.entrySet()) {
+			stats.put(entry.getKey(), entry.getValue().getStats());
+		}
+		return stats;
+	}
+}
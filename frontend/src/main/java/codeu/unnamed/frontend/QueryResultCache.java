@@ -0,0 +1,142 @@
+package codeu.unnamed.frontend;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * LRU cache of ranked queries, keyed by {@link UserQuery#getKey()} so the
+ * same terms in any order share one entry.
+ *
+ * Entries expire after a fixed time, and the whole cache is dropped when the
+ * index generation changes. The generation is read from Redis at most once
+ * per check interval, not on every query.
+ */
+@Component
+public class QueryResultCache {
+
+	private Map<String, QueryCursor> cursors;
+	private int maxEntries;
+	private long ttlMillis;
+
+	private LongSupplier generationSource;
+	private long checkIntervalMillis;
+	private volatile long generation;
+	private volatile long lastCheck;
+
+	private AtomicLong hits = new AtomicLong();
+	private AtomicLong misses = new AtomicLong();
+	private AtomicLong evictions = new AtomicLong();
+	private AtomicLong expirations = new AtomicLong();
+	private AtomicLong invalidations = new AtomicLong();
+
+	@Autowired
+	public QueryResultCache(JedisIndex index,
+			@Value("${search.cache.max-entries:1024}") int maxEntries,
+			@Value("${search.cache.ttl-ms:300000}") long ttlMillis,
+			@Value("${search.cache.generation-check-ms:1000}") long checkIntervalMillis)
+	{
+		this(index::getGeneration, maxEntries, ttlMillis, checkIntervalMillis);
+	}
+	/**
+	 * Constructor.
+	 *
+	 * @param generationSource reads the current index generation
+	 * @param maxEntries number of queries kept
+	 * @param ttlMillis time after which an entry is recomputed
+	 * @param checkIntervalMillis time between two reads of the generation
+	 */
+	public QueryResultCache(LongSupplier generationSource, int maxEntries, long ttlMillis, long checkIntervalMillis)
+	{
+		this.generationSource = generationSource;
+		this.maxEntries = maxEntries;
+		this.ttlMillis = ttlMillis;
+		this.checkIntervalMillis = checkIntervalMillis;
+		this.generation = Long.MIN_VALUE;
+		this.lastCheck = 0;
+		this.cursors = new LinkedHashMap<String, QueryCursor>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, QueryCursor> eldest) {
+				if (size() > QueryResultCache.this.maxEntries) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+	/**
+	 * Returns the cached cursor of the query, or a fresh one that is cached
+	 * from now on.
+	 */
+	public QueryCursor get(UserQuery query)
+	{
+		checkGeneration();
+
+		synchronized (cursors) {
+			QueryCursor cursor = cursors.get(query.getKey());
+
+			if (cursor != null && cursor.isOlderThan(ttlMillis)) {
+				expirations.incrementAndGet();
+				cursor = null;
+			}
+
+			if (cursor != null) {
+				hits.incrementAndGet();
+				return cursor;
+			}
+
+			misses.incrementAndGet();
+			cursor = new QueryCursor(query);
+			cursors.put(query.getKey(), cursor);
+			return cursor;
+		}
+	}
+	public void clear()
+	{
+		synchronized (cursors) {
+			cursors.clear();
+		}
+	}
+	private void checkGeneration()
+	{
+		long now = System.currentTimeMillis();
+		if (now - lastCheck < checkIntervalMillis) {
+			return;
+		}
+		lastCheck = now;
+
+		long current = generationSource.getAsLong();
+		if (current != generation) {
+			if (generation != Long.MIN_VALUE) {
+				invalidations.incrementAndGet();
+			}
+			generation = current;
+			clear();
+		}
+	}
+	public Map<String, Object> getStats()
+	{
+		Map<String, Object> stats = new LinkedHashMap<>();
+		long hitCount = hits.get();
+		long missCount = misses.get();
+
+		synchronized (cursors) {
+			stats.put("size", cursors.size());
+		}
+		stats.put("hits", hitCount);
+		stats.put("misses", missCount);
+		stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+		stats.put("evictions", evictions.get());
+		stats.put("expirations", expirations.get());
+		stats.put("invalidations", invalidations.get());
+		stats.put("generation", generation);
+
+		return stats;
+	}
+}
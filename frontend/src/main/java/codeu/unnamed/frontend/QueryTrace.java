@@ -0,0 +1,194 @@
+package codeu.unnamed.frontend;
+
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time spent in each stage of one request, and the I/O the request caused.
+ *
+ * The request thread opens a trace with {@link #begin(String, String)} and
+ * hands it to {@link QueryMetrics#record(QueryTrace)} when done. Code below
+ * reports through the static methods, which do nothing on a thread without
+ * a trace, so background jobs going through the same code aren't counted.
+ * {@link QueryExecutor} carries the trace over to its worker threads.
+ */
+public class QueryTrace {
+
+	public enum Stage {
+		// stemming the query terms
+		STEM,
+		// reading the next postings of every term
+		POSTINGS,
+		// frequencies of newly seen documents and index statistics
+		LOOKUPS,
+		// BM25 scores of the postings
+		SCORE,
+		// summing scores into the cursor and ranking
+		MERGE,
+		// loading the result documents from MySQL
+		HYDRATE,
+		// building the result summaries
+		SNIPPETS,
+		// looking up completions
+		COMPLETE
+	}
+
+	private static final ThreadLocal<QueryTrace> CURRENT = new ThreadLocal<>();
+
+	private String endpoint;
+	private String query;
+	private long start;
+	private long end;
+
+	// only recorded by the request thread
+	private long[] stageNanos = new long[Stage.values().length];
+
+	// also counted by worker threads
+	private AtomicInteger redisCalls = new AtomicInteger();
+	private AtomicInteger sqlCalls = new AtomicInteger();
+	private AtomicLong bytesLoaded = new AtomicLong();
+
+	private QueryTrace(String endpoint, String query)
+	{
+		this.endpoint = endpoint;
+		this.query = query;
+		this.start = System.nanoTime();
+	}
+	/**
+	 * Starts tracing a request on the calling thread.
+	 *
+	 * @param endpoint name the request's metrics are grouped under
+	 * @param query text of the request, for the slow query log
+	 */
+	public static QueryTrace begin(String endpoint, String query)
+	{
+		QueryTrace trace = new QueryTrace(endpoint, query);
+		CURRENT.set(trace);
+		return trace;
+	}
+	/**
+	 * Stops the clock and detaches the trace from the calling thread.
+	 */
+	public void end()
+	{
+		if (this.end == 0) {
+			this.end = System.nanoTime();
+		}
+		if (CURRENT.get() == this) {
+			CURRENT.remove();
+		}
+	}
+	/**
+	 * Adds the time since startNanos, a System.nanoTime(), to a stage of the
+	 * calling thread's request.
+	 */
+	public static void record(Stage stage, long startNanos)
+	{
+		QueryTrace trace = CURRENT.get();
+		if (trace != null) {
+			trace.stageNanos[stage.ordinal()] += System.nanoTime() - startNanos;
+		}
+	}
+	/**
+	 * Counts a round-trip to Redis.
+	 */
+	public static void redisCall()
+	{
+		QueryTrace trace = CURRENT.get();
+		if (trace != null) {
+			trace.redisCalls.incrementAndGet();
+		}
+	}
+	/**
+	 * Counts a round-trip to MySQL and the document bytes it returned.
+	 */
+	public static void sqlCall(long bytes)
+	{
+		QueryTrace trace = CURRENT.get();
+		if (trace != null) {
+			trace.sqlCalls.incrementAndGet();
+			trace.bytesLoaded.addAndGet(bytes);
+		}
+	}
+	/**
+	 * Counts bytes of stored data, other than postings, loaded from Redis.
+	 */
+	public static void bytesLoaded(long bytes)
+	{
+		QueryTrace trace = CURRENT.get();
+		if (trace != null) {
+			trace.bytesLoaded.addAndGet(bytes);
+		}
+	}
+	/**
+	 * Returns a task that runs with the calling thread's trace, for handing
+	 * work to another thread.
+	 */
+	public static <V> Callable<V> propagate(Callable<V> task)
+	{
+		QueryTrace trace = CURRENT.get();
+		if (trace == null) {
+			return task;
+		}
+
+		return () -> {
+			// the caller itself runs the task when the executor is saturated
+			QueryTrace previous = CURRENT.get();
+			CURRENT.set(trace);
+			try {
+				return task.call();
+			} finally {
+				if (previous == null) {
+					CURRENT.remove();
+				} else {
+					CURRENT.set(previous);
+				}
+			}
+		};
+	}
+	public String getEndpoint()
+	{
+		return this.endpoint;
+	}
+	public String getQuery()
+	{
+		return this.query;
+	}
+	public long getTotalNanos()
+	{
+		return (this.end == 0 ? System.nanoTime() : this.end) - this.start;
+	}
+	public long getStageNanos(Stage stage)
+	{
+		return this.stageNanos[stage.ordinal()];
+	}
+	public int getRedisCalls()
+	{
+		return this.redisCalls.get();
+	}
+	public int getSqlCalls()
+	{
+		return this.sqlCalls.get();
+	}
+	public long getBytesLoaded()
+	{
+		return this.bytesLoaded.get();
+	}
+	@Override
+	public String toString()
+	{
+		StringBuilder text = new StringBuilder();
+		text.append(String.format(Locale.ROOT, "total=%.1fms", getTotalNanos() / 1e6));
+		for (Stage stage : Stage.values()) {
+			if (getStageNanos(stage) > 0) {
+				text.append(String.format(Locale.ROOT, " %s=%.1fms", stage.name().toLowerCase(Locale.ROOT), getStageNanos(stage) / 1e6));
+			}
+		}
+		text.append(" redisCalls=").append(getRedisCalls());
+		text.append(" sqlCalls=").append(getSqlCalls());
+		text.append(" bytesLoaded=").append(getBytesLoaded());
+		return text.toString();
+	}
+}
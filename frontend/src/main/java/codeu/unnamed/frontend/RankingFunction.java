@@ -0,0 +1,79 @@
+package codeu.unnamed.frontend;
+
+/**
+ * Turns the postings of a query term into relevance scores.
+ *
+ * Implementations are immutable and shared by every query. Whatever a
+ * term's scores need apart from the postings themselves is computed once by
+ * {@link #prepare(IndexStatistics, String, int)}, so that scoring a block of
+ * postings is a plain loop over primitive arrays. Any Spring bean
+ * implementing this interface can be selected by its name, see
+ * {@link RankingFunctions}.
+ *
+ * Scores must not decrease as the frequency grows, nor increase as the
+ * document gets longer, when positive; threshold pruning relies on it.
+ */
+public interface RankingFunction {
+
+	/**
+	 * Scores of one term of a query.
+	 */
+	interface TermScorer {
+		/**
+		 * Scores the first count postings from their frequencies and the
+		 * lengths of their documents. Implementations are a single loop
+		 * without calls or branches, which the JIT can vectorize.
+		 */
+		void score(int[] frequencies, int[] docLengths, double[] scores, int count);
+
+		/**
+		 * Scores one posting.
+		 */
+		double score(int frequency, int docLength);
+
+		/**
+		 * Returns a score no posting can beat if its frequency is at most
+		 * frequency and its document at least minDocLength terms long.
+		 * Documents without the term score 0, so the bound is never below.
+		 */
+		default double upperBound(int frequency, int minDocLength)
+		{
+			double bound = score(frequency, minDocLength);
+			return Double.isNaN(bound) ? Double.POSITIVE_INFINITY : Math.max(bound, 0.0);
+		}
+	}
+
+	/**
+	 * Returns the name the function is selected by.
+	 */
+	String getName();
+
+	/**
+	 * Computes the factors of a term's scores that are the same for all its
+	 * postings.
+	 *
+	 * @param stats statistics of the query round, or null if the function
+	 *        reads impacts
+	 * @param term stemmed term
+	 * @param termWeight number of times the term occurs in the query
+	 */
+	TermScorer prepare(IndexStatistics stats, String term, int termWeight);
+
+	/**
+	 * Whether postings are read from the precomputed impact lists rather than
+	 * with their term frequencies.
+	 */
+	default boolean usesImpacts()
+	{
+		return false;
+	}
+
+	/**
+	 * Returns the function used instead for a query some term of which has
+	 * no impacts yet.
+	 */
+	default RankingFunction getFallback()
+	{
+		return this;
+	}
+}
@@ -0,0 +1,92 @@
+package codeu.unnamed.frontend;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The ranking functions queries can pick by name: bm25, tfidf and impact,
+ * with their parameters from the configuration, and any other
+ * {@link RankingFunction} bean.
+ */
+@Component
+public class RankingFunctions {
+
+	private Map<String, RankingFunction> functions = new ConcurrentHashMap<>();
+	private ImpactRanking impact;
+	private String defaultName;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param defaultName function of the queries that don't name one
+	 */
+	@Autowired
+	public RankingFunctions(@Value("${search.scoring:bm25}") String defaultName,
+			@Value("${search.ranking.bm25.k1:1.2}") double k1,
+			@Value("${search.ranking.bm25.b:0.75}") double b,
+			@Value("${search.ranking.bm25.k2:100}") double k2)
+	{
+		Bm25 bm25 = new Bm25(k1, b, k2);
+		this.impact = new ImpactRanking(bm25);
+		register(bm25);
+		register(new TfIdf());
+		register(this.impact);
+
+		this.defaultName = defaultName;
+	}
+	/**
+	 * Registers the ranking functions defined as beans, which may replace the
+	 * built-in ones.
+	 */
+	@Autowired(required = false)
+	public void setExtensions(List<RankingFunction> extensions)
+	{
+		for (RankingFunction function : extensions) {
+			register(function);
+		}
+	}
+	/**
+	 * Checks that the default function exists, once the beans are registered.
+	 */
+	@PostConstruct
+	public void checkDefault()
+	{
+		get(this.defaultName);
+	}
+	private void register(RankingFunction function)
+	{
+		this.functions.put(function.getName().toLowerCase(Locale.ROOT), function);
+	}
+	/**
+	 * Returns the function of the given name, in any case.
+	 *
+	 * @throws IllegalArgumentException if there is no such function
+	 */
+	public RankingFunction get(String name)
+	{
+		RankingFunction function = this.functions.get(name.trim().toLowerCase(Locale.ROOT));
+		if (function == null) {
+			throw new IllegalArgumentException("Unknown ranking function: " + name);
+		}
+		return function;
+	}
+	public RankingFunction getDefault()
+	{
+		return get(this.defaultName);
+	}
+	/**
+	 * Returns the function whose impacts the impact indexer stores.
+	 */
+	public ImpactRanking getImpact()
+	{
+		return this.impact;
+	}
+}
@@ -0,0 +1,194 @@
+package codeu.unnamed.frontend;
+
+import java.util.Arrays;
+
+/**
+ * Map from document ordinal to summed score, specialized for primitives.
+ *
+ * Open addressing with linear probing over parallel int and double arrays,
+ * so adding a score allocates nothing once the table is large enough. The
+ * occupied slots are also kept in insertion order, which makes iterating and
+ * clearing cost the number of documents rather than the table size.
+ *
+ * Not thread-safe. {@link #forThread()} hands every thread its own instance
+ * to reuse from one query to the next.
+ */
+public class ScoreAccumulator {
+
+	private static final int INITIAL_CAPACITY = 256;
+	// tables grown past this are dropped on clear instead of kept around
+	private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+
+	private static final ThreadLocal<ScoreAccumulator> LOCAL = ThreadLocal.withInitial(ScoreAccumulator::new);
+
+	private int[] documents;
+	private double[] scores;
+	private boolean[] used;
+	// occupied slots in insertion order
+	private int[] slots;
+	private int size;
+
+	/**
+	 * Constructor.
+	 */
+	public ScoreAccumulator()
+	{
+		allocate(INITIAL_CAPACITY);
+	}
+	/**
+	 * Returns the calling thread's accumulator, emptied.
+	 */
+	public static ScoreAccumulator forThread()
+	{
+		ScoreAccumulator accumulator = LOCAL.get();
+		accumulator.clear();
+		return accumulator;
+	}
+	public int size()
+	{
+		return this.size;
+	}
+	/**
+	 * Adds a score to the document's total.
+	 */
+	public void add(int document, double score)
+	{
+		int slot = find(document);
+
+		if (used[slot]) {
+			scores[slot] += score;
+			return;
+		}
+
+		used[slot] = true;
+		documents[slot] = document;
+		scores[slot] = score;
+		slots[size++] = slot;
+
+		// keep the table at most half full
+		if (size * 2 > documents.length) {
+			grow();
+		}
+	}
+	/**
+	 * Adds every total of another accumulator into this one.
+	 */
+	public void addAll(ScoreAccumulator other)
+	{
+		for (int n = 0; n < other.size; n++) {
+			add(other.documentAt(n), other.scoreAt(n));
+		}
+	}
+	/**
+	 * Returns the total of a document, or 0 if it has none.
+	 */
+	public double get(int document)
+	{
+		int slot = find(document);
+		return used[slot] ? scores[slot] : 0.0;
+	}
+	public boolean contains(int document)
+	{
+		return used[find(document)];
+	}
+	/**
+	 * Returns the ordinal of the n-th document added.
+	 */
+	public int documentAt(int n)
+	{
+		return documents[slots[n]];
+	}
+	/**
+	 * Returns the total of the n-th document added.
+	 */
+	public double scoreAt(int n)
+	{
+		return scores[slots[n]];
+	}
+	/**
+	 * Selects the k highest scoring documents, best first.
+	 */
+	public int[] top(int k)
+	{
+		TopK heap = new TopK(k);
+		for (int n = 0; n < size; n++) {
+			heap.offer(documentAt(n), scoreAt(n));
+		}
+		return heap.toSortedArray();
+	}
+	/**
+	 * Returns the k-th highest score, or negative infinity if there are
+	 * fewer than k documents.
+	 */
+	public double kthScore(int k)
+	{
+		TopK heap = new TopK(k);
+		for (int n = 0; n < size; n++) {
+			heap.offer(documentAt(n), scoreAt(n));
+		}
+		return heap.threshold();
+	}
+	/**
+	 * Empties the accumulator, keeping its table for reuse unless it grew
+	 * unusually large.
+	 */
+	public void clear()
+	{
+		if (documents.length > MAX_RETAINED_CAPACITY) {
+			allocate(INITIAL_CAPACITY);
+			return;
+		}
+
+		for (int n = 0; n < size; n++) {
+			used[slots[n]] = false;
+		}
+		size = 0;
+	}
+
+	// slot holding document, or the empty slot where it belongs
+	private int find(int document)
+	{
+		int mask = documents.length - 1;
+		int slot = hash(document) & mask;
+
+		while (used[slot] && documents[slot] != document) {
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+	private static int hash(int document)
+	{
+		// finalizer of MurmurHash3, as ordinals are consecutive
+		document ^= document >>> 16;
+		document *= 0x85ebca6b;
+		document ^= document >>> 13;
+		document *= 0xc2b2ae35;
+		document ^= document >>> 16;
+		return document;
+	}
+	private void allocate(int capacity)
+	{
+		documents = new int[capacity];
+		scores = new double[capacity];
+		used = new boolean[capacity];
+		slots = new int[capacity / 2 + 1];
+		size = 0;
+	}
+	private void grow()
+	{
+		int[] oldDocuments = documents;
+		double[] oldScores = scores;
+		int[] oldSlots = Arrays.copyOf(slots, size);
+		int count = size;
+
+		allocate(oldDocuments.length * 2);
+		for (int n = 0; n < count; n++) {
+			int slot = find(oldDocuments[oldSlots[n]]);
+			used[slot] = true;
+			documents[slot] = oldDocuments[oldSlots[n]];
+			scores[slot] = oldScores[oldSlots[n]];
+			slots[size++] = slot;
+		}
+	}
+}
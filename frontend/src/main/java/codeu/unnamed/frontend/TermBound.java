@@ -0,0 +1,109 @@
+package codeu.unnamed.frontend;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Index-time data bounding the score of the postings of a term that a
+ * query hasn't read yet.
+ *
+ * Postings are ranked by term frequency, so the frequency of the last one
+ * read bounds the rest. The other input, document length, is covered here:
+ * for every block of {@link #BLOCK_SIZE} postings this stores the length of
+ * the shortest document at that rank or below. Computed by
+ * {@link codeu.unnamed.frontendweb.ScoreBoundIndexer} and only trusted while
+ * the index is at the generation it was computed at. Counting the term's
+ * documents would not do: the crawler adds the weights of titles and
+ * headings to existing postings and grows document lengths without adding
+ * any, but it bumps the generation after every document it indexes.
+ */
+public class TermBound {
+
+	public static final int BLOCK_SIZE = 128;
+	private static final int VERSION = 2;
+
+	private long generation;
+	// minLength[b] is the shortest document ranked b * BLOCK_SIZE or below
+	private int[] minLength;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param generation generation of the index the bound was computed at
+	 * @param minLength shortest document length from the start of each block on
+	 */
+	public TermBound(long generation, int[] minLength)
+	{
+		this.generation = generation;
+		this.minLength = minLength;
+	}
+	/**
+	 * Computes the bound from the length of every document of the term, in
+	 * posting order, read at the given generation of the index.
+	 */
+	public static TermBound build(int[] lengths, long generation)
+	{
+		int[] minLength = new int[(lengths.length + BLOCK_SIZE - 1) / BLOCK_SIZE];
+		int min = Integer.MAX_VALUE;
+
+		for (int i = lengths.length - 1; i >= 0; i--) {
+			min = Math.min(min, lengths[i]);
+			if (i % BLOCK_SIZE == 0) {
+				minLength[i / BLOCK_SIZE] = min;
+			}
+		}
+
+		return new TermBound(generation, minLength);
+	}
+	public long getGeneration()
+	{
+		return this.generation;
+	}
+	/**
+	 * Returns a length no document ranked at or below the given rank is
+	 * shorter than, or 0 when the index has changed since the bound was
+	 * computed.
+	 *
+	 * @param rank rank of the first posting not read
+	 * @param generation generation of the index the postings were read at
+	 */
+	public int minDocLength(int rank, long generation)
+	{
+		if (generation != this.generation || minLength.length == 0) {
+			return 0;
+		}
+		return minLength[Math.min(rank / BLOCK_SIZE, minLength.length - 1)];
+	}
+	public byte[] encode()
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(16 + 4 * minLength.length);
+		buffer.putInt(VERSION).putLong(generation).putInt(minLength.length);
+		for (int length : minLength) {
+			buffer.putInt(length);
+		}
+		return buffer.array();
+	}
+	/**
+	 * Reads a bound written by {@link #encode()}.
+	 *
+	 * @return the bound, or null if the data is of another version
+	 */
+	public static TermBound decode(byte[] data)
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		if (data.length < 16 || buffer.getInt() != VERSION) {
+			return null;
+		}
+
+		long generation = buffer.getLong();
+		int blocks = buffer.getInt();
+		if (blocks < 0 || buffer.remaining() != 4L * blocks) {
+			return null;
+		}
+		int[] minLength = new int[blocks];
+		for (int b = 0; b < minLength.length; b++) {
+			minLength[b] = buffer.getInt();
+		}
+
+		return new TermBound(generation, minLength);
+	}
+}
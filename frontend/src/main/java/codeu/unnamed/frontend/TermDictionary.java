@@ -0,0 +1,72 @@
+package codeu.unnamed.frontend;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dense int ids for the stemmed terms of the index, so that per-term state
+ * can be keyed by int instead of hashing the term again at every stage.
+ *
+ * Ids are assigned the first time a term is added and kept for the life of
+ * the process. Callers only add terms that have postings, which bounds the
+ * dictionary by the vocabulary of the index rather than by whatever users
+ * type. Lookups take no lock.
+ */
+public class TermDictionary {
+
+	private static final int PAGE_BITS = 10;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+	private ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+	// terms by id, PAGE_SIZE per page, published by the map
+	private volatile String[][] pages = new String[0][];
+
+	/**
+	 * Returns the id of a term, or -1 if it has none.
+	 */
+	public int find(String term)
+	{
+		Integer id = ids.get(term);
+		return id == null ? -1 : id;
+	}
+	/**
+	 * Returns the id of a term, assigning the next one if the term has none
+	 * yet.
+	 */
+	public int add(String term)
+	{
+		Integer id = ids.get(term);
+		if (id != null) {
+			return id;
+		}
+
+		synchronized (this) {
+			id = ids.get(term);
+			if (id != null) {
+				return id;
+			}
+
+			int next = ids.size();
+			if ((next >>> PAGE_BITS) == pages.length) {
+				String[][] grown = new String[pages.length + 1][];
+				System.arraycopy(pages, 0, grown, 0, pages.length);
+				grown[pages.length] = new String[PAGE_SIZE];
+				pages = grown;
+			}
+			pages[next >>> PAGE_BITS][next & (PAGE_SIZE - 1)] = term;
+
+			ids.put(term, next);
+			return next;
+		}
+	}
+	/**
+	 * Returns the term an id was assigned to.
+	 */
+	public String term(int id)
+	{
+		return pages[id >>> PAGE_BITS][id & (PAGE_SIZE - 1)];
+	}
+	public int size()
+	{
+		return ids.size();
+	}
+}
@@ -0,0 +1,36 @@
+package codeu.unnamed.frontend;
+
+/**
+ * Classic TF-IDF, as Lucene's ClassicSimilarity: the square root of the
+ * frequency, times the squared idf, over the square root of the document
+ * length.
+ */
+public class TfIdf implements RankingFunction {
+
+	@Override
+	public String getName()
+	{
+		return "tfidf";
+	}
+	@Override
+	public TermScorer prepare(IndexStatistics stats, String term, int termWeight)
+	{
+		double idf = 1 + Math.log(stats.getTotalDocuments() / (stats.numberOfDocsContainingTerm(term) + 1.0));
+		double weight = idf * idf * termWeight * 100;
+
+		return new TermScorer() {
+			@Override
+			public void score(int[] frequencies, int[] docLengths, double[] scores, int count)
+			{
+				for (int i = 0; i < count; i++) {
+					scores[i] = weight * Math.sqrt((double) frequencies[i] / Math.max(docLengths[i], 1));
+				}
+			}
+			@Override
+			public double score(int frequency, int docLength)
+			{
+				return weight * Math.sqrt((double) frequency / Math.max(docLength, 1));
+			}
+		};
+	}
+}
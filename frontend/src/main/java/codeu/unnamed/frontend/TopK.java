@@ -0,0 +1,143 @@
+package codeu.unnamed.frontend;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the K highest scoring documents seen so far.
+ *
+ * Backed by a bounded binary min-heap over primitive arrays, so offering n
+ * candidates costs O(n log K) time and no allocation beyond the two arrays.
+ * Equal scores are broken by the smaller document ordinal to keep results
+ * stable.
+ */
+public class TopK {
+
+	private int[] documents;
+	private double[] scores;
+	private int size;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param k maximum number of documents kept
+	 */
+	public TopK(int k)
+	{
+		this.documents = new int[Math.max(k, 0)];
+		this.scores = new double[Math.max(k, 0)];
+		this.size = 0;
+	}
+	public int size()
+	{
+		return this.size;
+	}
+	public boolean isFull()
+	{
+		return this.size == this.documents.length;
+	}
+	/**
+	 * Returns the lowest score still in the heap once it is full, which is
+	 * the score a new document has to beat; negative infinity otherwise.
+	 */
+	public double threshold()
+	{
+		return isFull() && size > 0 ? scores[0] : Double.NEGATIVE_INFINITY;
+	}
+	/**
+	 * Offers a document to the heap.
+	 *
+	 * @return true if the document is now among the top K
+	 */
+	public boolean offer(int document, double score)
+	{
+		if (size < documents.length) {
+			documents[size] = document;
+			scores[size] = score;
+			siftUp(size++);
+			return true;
+		}
+
+		if (size == 0 || !less(scores[0], documents[0], score, document)) {
+			return false;
+		}
+
+		documents[0] = document;
+		scores[0] = score;
+		siftDown(0);
+		return true;
+	}
+	/**
+	 * Returns the kept document ordinals, best first. The heap is left untouched.
+	 */
+	public int[] toSortedArray()
+	{
+		int[] heapDocuments = Arrays.copyOf(documents, size);
+		double[] heapScores = Arrays.copyOf(scores, size);
+		int[] result = new int[size];
+
+		// pop the minimum into the back of the result until the copy is empty
+		for (int n = size; n > 0; n--) {
+			result[n - 1] = heapDocuments[0];
+			heapDocuments[0] = heapDocuments[n - 1];
+			heapScores[0] = heapScores[n - 1];
+			siftDown(heapDocuments, heapScores, 0, n - 1);
+		}
+
+		return result;
+	}
+
+	// whether (s1, document1) ranks below (s2, document2)
+	private static boolean less(double s1, int document1, double s2, int document2)
+	{
+		if (s1 != s2) {
+			return s1 < s2;
+		}
+		return document1 > document2;
+	}
+	private void siftUp(int i)
+	{
+		int document = documents[i];
+		double score = scores[i];
+
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!less(score, document, scores[parent], documents[parent])) {
+				break;
+			}
+			documents[i] = documents[parent];
+			scores[i] = scores[parent];
+			i = parent;
+		}
+
+		documents[i] = document;
+		scores[i] = score;
+	}
+	private void siftDown(int i)
+	{
+		siftDown(documents, scores, i, size);
+	}
+	private static void siftDown(int[] documents, double[] scores, int i, int size)
+	{
+		int document = documents[i];
+		double score = scores[i];
+
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && less(scores[child + 1], documents[child + 1], scores[child], documents[child])) {
+				child++;
+			}
+			if (!less(scores[child], documents[child], score, document)) {
+				break;
+			}
+			documents[i] = documents[child];
+			scores[i] = scores[child];
+			i = child;
+		}
+
+		documents[i] = document;
+		scores[i] = score;
+	}
+}
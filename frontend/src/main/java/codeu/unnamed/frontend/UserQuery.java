@@ -3,17 +3,31 @@ package codeu.unnamed.frontend;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
 
 public class UserQuery
 {
 	//maps from query to query weight
 	private Map<String, Integer> query;
+	private RankingFunction ranking;
 	/**
 	 * Constructor
 	 */
 	public UserQuery(String[] s)
+	{
+		this(s, Bm25.DEFAULT);
+	}
+	/**
+	 * Constructor
+	 *
+	 * @param s query terms
+	 * @param ranking how the terms' postings are scored
+	 */
+	public UserQuery(String[] s, RankingFunction ranking)
 	{
 		this.query = processArrayQueries(s);
+		this.ranking = ranking;
 	}
 	/**
 	 * Takes query string and creates mapping from query to query weight
@@ -30,5 +44,21 @@ public class UserQuery
 	{
 		return this.query.entrySet();
 	}
+	public RankingFunction getRanking()
+	{
+		return this.ranking;
+	}
+	/**
+	 * Returns a key identifying the term multiset and ranking of this query,
+	 * independent of the order the terms were typed in.
+	 */
+	public String getKey()
+	{
+		StringJoiner key = new StringJoiner(" ", this.ranking.getName() + ":", "");
+		for (Map.Entry<String, Integer> entry : new TreeMap<>(this.query).entrySet()) {
+			key.add(entry.getKey() + "^" + entry.getValue());
+		}
+		return key.toString();
+	}
 }
 
@@ -2,11 +2,11 @@ package codeu.unnamed.frontend;
 import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.Tuple;
+import redis.clients.jedis.JedisPool;
 
 /**
 * Represents the results of a search query.
@@ -14,86 +14,286 @@ import redis.clients.jedis.Tuple;
 */
 @Component
 public class WebSearch {
-	// map from document containing term t to BM25 score
-	private MapBM<Tuple> mapBM;
+	// map from document containing term t to its score
+	private MapBM<PostingList> mapBM;
 	//number of times term t appears in all documents of collection containing term t
 	private String term;
-	protected static JedisIndex index = new JedisIndex(new Jedis("localhost", 6379));
+	protected JedisIndex index;
+	private QueryExecutor executor;
+	// best ranked postings of hot terms
+	private PostingCache postings;
+	// merged state of recently ranked queries
+	private QueryResultCache cache;
+
+	// postings fetched per term for the first page
+	private static final int MIN_DEPTH = 21;
+	// deepest result a query can be paged to
+	private static final int MAX_DEPTH = 1000;
+	// postings read per term before settling for an approximate top
+	private static final int MAX_SCAN_DEPTH = 10 * MAX_DEPTH;
 
     /**
 	* Constructor.
 	*
      * @param map
      */
-	public WebSearch(Set<Tuple> map, String term, Integer termWeight)
+	public WebSearch(PostingList map, IndexStatistics stats, String term, Integer termWeight)
+	{
+		this(new MapBM<>(map, stats, term, termWeight), term);
+	}
+	private WebSearch(MapBM<PostingList> mapBM, String term)
 	{
 		this.term = term;
-		this.mapBM = new MapBM<>(map, index, term, termWeight);
+		this.mapBM = mapBM;
 	}
-	public WebSearch()
+	private WebSearch(PostingList map, IndexStatistics stats, String term, RankingFunction.TermScorer scorer)
+	{
+		this(new MapBM<>(map, stats, scorer), term);
+	}
+	@Autowired
+	public WebSearch(JedisIndex index, QueryExecutor executor, QueryResultCache cache, PostingCache postings)
 	{
 		this.term = null;
 		this.mapBM = null;
+		this.index = index;
+		this.executor = executor;
+		this.cache = cache;
+		this.postings = postings;
 	}
 
-	public static ResultMap multiSearch(List<WebSearch> list)
+	/**
+	* Sums the scores of every term per document, into the calling thread's
+	* accumulator, which is only valid until the thread's next search.
+	*/
+	public static ScoreAccumulator multiSearch(List<WebSearch> list)
 	{
-		List<Map<String, Double>> bmList = new ArrayList<>();
-		List<String> terms = new ArrayList<>();
-
-		for(WebSearch search: list) {
-			terms.add(search.term);
+		ScoreAccumulator totals = ScoreAccumulator.forThread();
 
-			bmList.add(search.mapBM.getMap());
+		for (WebSearch search : list) {
+			search.mapBM.addTo(totals);
 		}
 
-        Map<String, Double> result = bmList.stream().reduce(new HashMap<>(), (res, elm) -> {
-            for (Map.Entry<String, Double> entry : elm.entrySet()) {
-                res.merge(entry.getKey(), entry.getValue(), (a, b) -> a+b);
-            }
-            return res;
-        });
-
-		return new ResultMap(result);
+		return totals;
 	}
 
 	/**
-	* Performs a search and makes a WebSearch object.
+	* Scores the postings of a single term and makes a WebSearch object.
 	*
-	* @param term
-	* @param index
+	* @param query
+	* @param map
+	* @param stats
 	* @return
 	*/
-	public static WebSearch singleSearch(Map.Entry<String, Integer> query) {
+	public static WebSearch singleSearch(Map.Entry<String, Integer> query, PostingList map, IndexStatistics stats) {
 		String term = query.getKey();
 		Integer termWeight = query.getValue();
 
-		Set<Tuple> map = index.getCounts(term); // mapping from document to term frequency
+		return new WebSearch(map, stats, term, termWeight);
 
-		return new WebSearch(map, term, termWeight);
+	}
 
+	/**
+	* Scores the postings of a single term with a scorer prepared for it and
+	* makes a WebSearch object.
+	*/
+	public static WebSearch rankedSearch(String term, PostingList map, IndexStatistics stats, RankingFunction.TermScorer scorer)
+	{
+		return new WebSearch(map, stats, term, scorer);
 	}
 	/**
 	* Returns a list of WebSearch objects from user query - each WebSearch objects
-	* corresponds to a search term
-	* TO DO: Implement Java Future
+	* corresponds to a search term. Only the postings between the cursor's
+	* depth and the target depth are read, through the posting cache, and the
+	* cursor is advanced past them. Terms are fetched concurrently; terms that
+	* miss the deadline are left where they were.
+	*
+	* Documents seen for the first time have their frequency in every term
+	* looked up, so they are scored in full and never have to be revisited.
+	* The cursor's threshold is then lowered to the best score a document not
+	* seen yet could still reach.
+	*
+	* Postings are scored with the query's ranking function. One that reads
+	* impacts gets the terms' impact lists instead, and neither index
+	* statistics nor bounds are needed; a query some term of which has no
+	* impacts yet is scored with the function's fallback throughout.
 	*/
-	public static List<WebSearch> search(UserQuery query)
+	public List<WebSearch> search(QueryCursor cursor, int depth, long deadline)
 	{
-		return query.getQueries().stream().map(WebSearch::singleSearch).collect(Collectors.toList());
+		UserQuery query = cursor.getQuery();
+		List<String> terms = new ArrayList<>();
+		for (Map.Entry<String, Integer> entry : query.getQueries()) {
+			terms.add(entry.getKey());
+		}
+
+		if (cursor.getRanking() == null) {
+			RankingFunction ranking = query.getRanking();
+			if (ranking.usesImpacts() && !index.hasImpacts(terms)) {
+				ranking = ranking.getFallback();
+			}
+			cursor.setRanking(ranking);
+		}
+		RankingFunction ranking = cursor.getRanking();
+		boolean impacts = ranking.usesImpacts();
+
+		if (!impacts && cursor.getBounds() == null) {
+			cursor.setBounds(index.getTermBounds(terms));
+		}
+
+		Map<String, Callable<PostingList>> fetches = new LinkedHashMap<>();
+		for (String term : terms) {
+			int start = cursor.getDepth(term);
+			if (!cursor.isExhausted(term) && start < depth) {
+				fetches.put(term, () -> postings.get(term, impacts, start, depth - 1));
+			}
+		}
+
+		// mapping from term to (document, term frequency) postings
+		long start = System.nanoTime();
+		Map<String, PostingList> fetched = executor.invokeAll(fetches, deadline);
+		QueryTrace.record(QueryTrace.Stage.POSTINGS, start);
+
+		ScoreAccumulator unseen = new ScoreAccumulator();
+		for (PostingList list : fetched.values()) {
+			for (int i = 0; i < list.size(); i++) {
+				if (!cursor.getResults().contains(list.getDocument(i))) {
+					unseen.add(list.getDocument(i), 0.0);
+				}
+			}
+		}
+		int[] documents = new int[unseen.size()];
+		for (int n = 0; n < documents.length; n++) {
+			documents[n] = unseen.documentAt(n);
+		}
+
+		start = System.nanoTime();
+		Map<String, PostingList> complete;
+		IndexStatistics stats = null;
+		if (impacts) {
+			complete = index.getImpacts(terms, documents);
+		} else {
+			complete = index.getPostings(terms, documents);
+			stats = index.getStatistics(complete);
+		}
+		QueryTrace.record(QueryTrace.Stage.LOOKUPS, start);
+
+		start = System.nanoTime();
+		List<WebSearch> results = new ArrayList<>();
+		Map<String, RankingFunction.TermScorer> scorers = new HashMap<>();
+		for (Map.Entry<String, Integer> entry : query.getQueries()) {
+			RankingFunction.TermScorer scorer = ranking.prepare(stats, entry.getKey(), entry.getValue());
+			scorers.put(entry.getKey(), scorer);
+			results.add(rankedSearch(entry.getKey(), complete.get(entry.getKey()), stats, scorer));
+		}
+		QueryTrace.record(QueryTrace.Stage.SCORE, start);
+
+		for (Map.Entry<String, PostingList> entry : fetched.entrySet()) {
+			cursor.advance(entry.getKey(), depth - cursor.getDepth(entry.getKey()), entry.getValue());
+		}
+		cursor.setThreshold(threshold(cursor, stats, scorers));
+
+		return results;
+	}
+
+	/**
+	* Returns the highest score a document absent from every posting read so
+	* far could have: the sum, over the terms with postings left, of the score
+	* of the last frequency read in the shortest document left. Impacts are
+	* read in score order, so the last one read bounds the rest by itself.
+	*
+	* A term's stored bound only gives the shortest document left while the
+	* index is at the generation the bound was computed at, which is the
+	* round's total of documents. Any other bound is ignored, and documents
+	* of any length are assumed, so the top k stays exact.
+	*/
+	private static double threshold(QueryCursor cursor, IndexStatistics stats, Map<String, RankingFunction.TermScorer> scorers)
+	{
+		double threshold = 0.0;
+
+		for (Map.Entry<String, Integer> entry : cursor.getQuery().getQueries()) {
+			String term = entry.getKey();
+			if (cursor.isExhausted(term)) {
+				continue;
+			}
+
+			Integer frequency = cursor.getLastFrequency(term);
+			if (frequency == null) {
+				return Double.POSITIVE_INFINITY;
+			}
+
+			TermBound bound = cursor.getBounds() == null ? null : cursor.getBounds().get(term);
+			int minLength = bound == null ? 0 : bound.minDocLength(cursor.getDepth(term), stats.getTotalDocuments());
+			threshold += scorers.get(term).upperBound(frequency, minLength);
+		}
+
+		return threshold;
 	}
 	
-   public List<String> processQueries(String[] q)
+   /**
+    * Runs a query and returns the ids of one page of documents, best first.
+    *
+    * The terms' postings are read in growing rounds until the documents
+    * ranked down to offset + limit are certain to be the best ones, which
+    * usually takes a small fraction of the postings. Past MAX_SCAN_DEPTH
+    * postings per term, the query deadline, or a round some term's postings
+    * could not be read in, the best found so far are returned. The merged state is kept in a cached cursor, so repeating the
+    * query is served from memory and the next page only reads the postings
+    * it has not seen yet.
+    */
+   public long[] processQueries(String[] q, int offset, int limit)
    {
-	   UserQuery query = new UserQuery(q);
-	   List<WebSearch> searchResults = search(query);
-	   ResultMap multi = multiSearch(searchResults);
-	   return multi.returnResultSet();
+	   return processQueries(q, Bm25.DEFAULT, offset, limit);
+   }
+
+   /**
+    * Runs a query with the given ranking function and returns the ids of one
+    * page of documents, best first.
+    */
+   public long[] processQueries(String[] q, RankingFunction ranking, int offset, int limit)
+   {
+	   UserQuery query = new UserQuery(q, ranking);
+	   int end = Math.min(offset + limit, MAX_DEPTH);
+	   long deadline = executor.deadline();
+
+	   QueryCursor cursor = cache.get(query);
+
+	   int[] top;
+	   synchronized (cursor) {
+		   int depth = Math.max(MIN_DEPTH, end);
+		   while (end > 0 && !cursor.isSettled(end) && System.nanoTime() - deadline < 0) {
+			   if (!cursor.covers(depth)) {
+				   List<WebSearch> searches = search(cursor, depth, deadline);
+				   long start = System.nanoTime();
+				   cursor.merge(multiSearch(searches));
+				   QueryTrace.record(QueryTrace.Stage.MERGE, start);
+				   // a term whose fetch failed would only fail again
+				   if (!cursor.covers(depth) || Thread.currentThread().isInterrupted()) {
+					   break;
+				   }
+			   } else if (depth < MAX_SCAN_DEPTH) {
+				   depth = Math.min(depth * 2, MAX_SCAN_DEPTH);
+			   } else {
+				   break;
+			   }
+		   }
+		   long start = System.nanoTime();
+		   top = cursor.getResults().top(end);
+		   QueryTrace.record(QueryTrace.Stage.MERGE, start);
+	   }
+
+	   return index.getDocumentDictionary().ids(Arrays.copyOfRange(top, Math.min(offset, top.length), top.length));
    }
 	
 	public static void main(String[] args) throws IOException {
 		String[] q = {"java", "project"};
-		System.out.println(new WebSearch().processQueries(q));
+		QueryExecutor executor = new QueryExecutor(4, 16, 1000);
+		try (JedisPool pool = new JedisPool("localhost", 6379)) {
+			JedisIndex index = new JedisIndex(pool);
+			QueryResultCache cache = new QueryResultCache(index::getGeneration, 16, 60000, 1000);
+			PostingCache postings = new PostingCache(index, index::getGeneration, 1 << 20, 1000);
+			System.out.println(Arrays.toString(new WebSearch(index, executor, cache, postings).processQueries(q, 0, 20)));
+		} finally {
+			executor.shutdown();
+		}
 	}
 }
 
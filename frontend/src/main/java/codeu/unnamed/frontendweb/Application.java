@@ -7,7 +7,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 /**
  * Created by fanzeyi on 8/3/16.
  */
-@SpringBootApplication
+@SpringBootApplication(scanBasePackages = "codeu.unnamed")
 public class Application {
     @Autowired
     public static void main(String[] args) {
@@ -1,54 +1,212 @@
 package codeu.unnamed.frontendweb;
 
-import ds.tree.RadixTree;
-import ds.tree.RadixTreeImpl;
+import codeu.unnamed.frontend.JedisIndex;
+import ds.tree.PackedRadixTree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.ApplicationListener;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
+import org.tartarus.snowball.SnowballStemmer;
+import org.tartarus.snowball.ext.englishStemmer;
+import redis.clients.jedis.exceptions.JedisException;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Created by fanzeyi on 8/5/16.
  */
 @Component
 public class AutoCompletion implements ApplicationListener<ApplicationReadyEvent> {
-    private RadixTree<String> completionTree;
+    private static final Logger log = LoggerFactory.getLogger(AutoCompletion.class);
+
+    private static final int LIMIT = 5;
+
+    private static final int HOT_PREFIX_LENGTH = 3;
+
+    private static final int CACHE_SIZE = 4096;
+
+    private static final int FUZZY_NODE_BUDGET = 20000;
+
+    // replaced as a whole, so readers never see an index being changed
+    private volatile CompletionIndex completionIndex = build(PackedRadixTree.of(new ArrayList<>()));
+
+    // stems of the vocabulary, whose terms need no completion of their own
+    private volatile Set<String> knownStems = null;
+
+    private volatile boolean loaded = false;
+
+    @Autowired
+    private JedisIndex jedisIndex;
+
+    @Value("${completion.wordlist:classpath:wordlist.txt}")
+    private Resource wordlist;
+
+    // saved tree that is mapped at startup instead of rebuilding from the word list
+    @Value("${completion.index.file:}")
+    private String indexFile;
 
     @Override
     public void onApplicationEvent(ApplicationReadyEvent event) {
-        this.completionTree = new RadixTreeImpl<>();
+        PackedRadixTree tree = null;
 
-        ClassLoader classLoader = getClass().getClassLoader();
-        File file = new File(classLoader.getResource("wordlist.txt").getFile());
-        BufferedReader reader = null;
+        if (!this.indexFile.isEmpty() && Files.exists(Paths.get(this.indexFile))) {
+            try {
+                tree = PackedRadixTree.map(Paths.get(this.indexFile));
+            } catch (IOException e) {
+                log.warn("Could not map completion index {}, rebuilding it", this.indexFile, e);
+            }
+        }
 
-        try {
-            reader = new BufferedReader(new FileReader(file));
-            String line = null;
-            int i = 0;
+        if (tree == null) {
+            tree = PackedRadixTree.of(score(readWordList()));
+            save(tree);
+        }
+
+        synchronized (this) {
+            this.completionIndex = build(tree);
+            this.loaded = true;
+        }
+    }
 
-            while ((line = reader.readLine()) != null && i++ < 10000) {
+    private List<String> readWordList() {
+        List<String> words = new ArrayList<>();
+
+        // read as a stream so the list also loads from inside a packaged jar
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(this.wordlist.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
                 if (line.length() >= 3) {
-                    this.completionTree.insert(line, line);
+                    words.add(line);
                 }
             }
-        } catch (FileNotFoundException e) {
         } catch (IOException e) {
-        } finally {
-            try {
-                if (reader != null) {
+            log.error("Could not read completion word list {}", this.wordlist, e);
+        }
+
+        return words;
+    }
+
+    // keeps the vocabulary for the next start, when an index file is configured
+    private void save(PackedRadixTree tree) {
+        if (this.indexFile.isEmpty()) {
+            return;
+        }
+
+        try {
+            tree.writeTo(Paths.get(this.indexFile));
+        } catch (IOException e) {
+            log.warn("Could not save completion index to {}", this.indexFile, e);
+        }
+    }
+
+    /**
+     * Whether the word list has been loaded. Terms should only be added
+     * after that, so they can be told apart from the words of the list.
+     */
+    public boolean isLoaded() {
+        return this.loaded;
+    }
+
+    /**
+     * Adds scored words to the vocabulary. The current index keeps serving
+     * until the new one, with its caches, is built and swapped in.
+     */
+    public synchronized void addTerms(Map<String, Float> terms) {
+        if (terms.isEmpty()) {
+            return;
+        }
+
+        PackedRadixTree tree = this.completionIndex.getTree().withKeys(terms);
+        this.completionIndex = build(tree);
+        save(tree);
 
-                    reader.close();
+        Set<String> stems = new HashSet<>(knownStems());
+        stems.addAll(stem(new ArrayList<>(terms.keySet())));
+        this.knownStems = stems;
+    }
+
+    /**
+     * Whether an indexed stem is already covered by the vocabulary, as the
+     * stem of one of its words.
+     */
+    public boolean isKnown(String stem) {
+        return knownStems().contains(stem);
+    }
+
+    private Set<String> knownStems() {
+        Set<String> stems = this.knownStems;
+
+        if (stems == null) {
+            // a mapped tree comes without them, so they are worked out once, on first use
+            synchronized (this) {
+                stems = this.knownStems;
+                if (stems == null) {
+                    stems = new HashSet<>(stem(this.completionIndex.getTree().searchPrefix("", Integer.MAX_VALUE)));
+                    this.knownStems = stems;
                 }
-            } catch (IOException e) {
             }
         }
 
+        return stems;
+    }
+
+    private static CompletionIndex build(PackedRadixTree tree) {
+        return new CompletionIndex(tree, LIMIT, HOT_PREFIX_LENGTH, CACHE_SIZE, FUZZY_NODE_BUDGET);
+    }
+
+    /**
+     * Scores every word by the number of crawled documents containing it. The
+     * word list is sorted by general frequency, so its order breaks ties and
+     * carries the ranking on its own while the index is empty.
+     */
+    private Map<String, Float> score(List<String> words) {
+        List<String> stems = stem(words);
+        this.knownStems = new HashSet<>(stems);
+
+        int[] frequencies = new int[words.size()];
+        try {
+            frequencies = this.jedisIndex.numberOfDocsContainingTerms(stems);
+        } catch (JedisException e) {
+            log.warn("Could not load document frequencies, ranking completions by word list order", e);
+        }
+
+        Map<String, Float> scores = new LinkedHashMap<>();
+        for (int i = 0; i < words.size(); i++) {
+            float rank = 1.0f - (float) i / words.size();
+            scores.putIfAbsent(words.get(i), frequencies[i] + rank);
+        }
+
+        return scores;
+    }
+
+    private static List<String> stem(List<String> words) {
+        SnowballStemmer stemmer = new englishStemmer();
+        List<String> stems = new ArrayList<>(words.size());
+
+        for (String word : words) {
+            stemmer.setCurrent(word.toLowerCase());
+            stemmer.stem();
+            stems.add(stemmer.getCurrent());
+        }
+
+        return stems;
     }
 
     public List<String> complete(String key) {
-        return this.completionTree.searchPrefix(key, 5);
+        return this.completionIndex.complete(key);
     }
 }
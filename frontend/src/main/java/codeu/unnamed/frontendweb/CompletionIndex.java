@@ -0,0 +1,110 @@
+package codeu.unnamed.frontendweb;
+
+import ds.tree.PackedRadixTree;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Completion tree together with its result caches.
+ *
+ * The results of every short prefix are computed once when the index is
+ * built and looked up without locking; longer prefixes go through a small
+ * LRU. Instances are immutable apart from the LRU, so one can be shared by
+ * all request threads.
+ *
+ * A prefix without completions is taken to be mistyped and is answered by a
+ * fuzzy search instead, allowing one edit from three characters on and two
+ * from six.
+ */
+public class CompletionIndex {
+    private static final int ONE_EDIT_LENGTH = 3;
+
+    private static final int TWO_EDIT_LENGTH = 6;
+
+    private final PackedRadixTree tree;
+
+    private final int limit;
+
+    private final int hotPrefixLength;
+
+    private final int fuzzyNodeBudget;
+
+    // results of every prefix up to hotPrefixLength characters
+    private final Map<String, List<String>> hotPrefixes;
+
+    private final Map<String, List<String>> recentPrefixes;
+
+    /**
+     * @param tree The completion tree
+     * @param limit Number of completions returned per prefix
+     * @param hotPrefixLength Prefixes up to this length are precomputed
+     * @param cacheSize Number of longer prefixes kept in the LRU
+     * @param fuzzyNodeBudget Most tree nodes a single fuzzy search may visit
+     */
+    public CompletionIndex(PackedRadixTree tree, int limit, int hotPrefixLength, int cacheSize, int fuzzyNodeBudget) {
+        this.tree = tree;
+        this.limit = limit;
+        this.hotPrefixLength = hotPrefixLength;
+        this.fuzzyNodeBudget = fuzzyNodeBudget;
+
+        Map<String, List<String>> hot = new HashMap<>();
+        hot.put("", Collections.unmodifiableList(tree.searchTop("", limit)));
+        for (String prefix : tree.prefixes(hotPrefixLength)) {
+            hot.put(prefix, Collections.unmodifiableList(tree.searchTop(prefix, limit)));
+        }
+        this.hotPrefixes = hot;
+
+        this.recentPrefixes = Collections.synchronizedMap(new LinkedHashMap<String, List<String>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    public PackedRadixTree getTree() {
+        return tree;
+    }
+
+    /**
+     * Returns the best completions of a prefix, or of the closest prefixes
+     * when nothing starts with it.
+     */
+    public List<String> complete(String prefix) {
+        if (prefix.length() <= this.hotPrefixLength) {
+            List<String> result = this.hotPrefixes.get(prefix);
+            if (result != null) {
+                return result;
+            }
+            // every prefix of a key is in the map, so a miss means no exact completion
+            if (maxEdits(prefix) == 0) {
+                return Collections.emptyList();
+            }
+        }
+
+        List<String> result = this.recentPrefixes.get(prefix);
+
+        if (result == null) {
+            List<String> found = this.tree.searchTop(prefix, this.limit);
+            if (found.isEmpty() && maxEdits(prefix) > 0) {
+                found = this.tree.searchFuzzy(prefix, maxEdits(prefix), this.limit, this.fuzzyNodeBudget);
+            }
+            result = Collections.unmodifiableList(found);
+            this.recentPrefixes.put(prefix, result);
+        }
+
+        return result;
+    }
+
+    // short prefixes are within an edit or two of most of the vocabulary
+    private static int maxEdits(String prefix) {
+        if (prefix.length() >= TWO_EDIT_LENGTH) {
+            return 2;
+        }
+        return prefix.length() >= ONE_EDIT_LENGTH ? 1 : 0;
+    }
+}
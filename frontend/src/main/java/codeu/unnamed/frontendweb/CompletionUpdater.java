@@ -0,0 +1,200 @@
+package codeu.unnamed.frontendweb;
+
+import codeu.unnamed.frontend.JedisIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+import org.tartarus.snowball.SnowballStemmer;
+import org.tartarus.snowball.ext.englishStemmer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Background stage that grows the completion vocabulary with the words of
+ * the crawled documents.
+ *
+ * The index only holds stems, such as librari for library and libraries,
+ * which are no use as completions. So the text of the documents is read a
+ * batch at a time, and every stem that is not covered by the vocabulary yet
+ * and appears in enough indexed documents to not be noise is added as the
+ * word it most often comes from. Rebuilding the index takes a few hundred
+ * milliseconds, so the words of every batch read in an interval are handed
+ * to {@link AutoCompletion} in one go. The last document read is kept in
+ * Redis, so a restart carries on where it stopped. Disabled by default;
+ * enabled by completion.update.enabled.
+ */
+@Component
+public class CompletionUpdater implements ApplicationListener<ApplicationReadyEvent>, Runnable {
+    private static final Logger log = LoggerFactory.getLogger(CompletionUpdater.class);
+
+    private static final int DOCUMENTS_PER_BATCH = 100;
+
+    // documents read before rebuilding, so catching up doesn't wait an interval per batch
+    private static final int MAX_DOCUMENTS_PER_UPDATE = 10000;
+
+    // same budget as the snippet indexer
+    private static final int MAX_TEXT_BYTES = 256 * 1024;
+
+    private static final int MIN_DOCUMENTS = 3;
+
+    private static final int MAX_TERM_LENGTH = 24;
+
+    @Autowired
+    private AutoCompletion autoCompletion;
+
+    @Autowired
+    private JedisIndex jedisIndex;
+
+    @Autowired
+    private DocumentDao documentDao;
+
+    @Value("${completion.update.enabled:false}")
+    private boolean enabled;
+
+    @Value("${completion.update.interval-ms:300000}")
+    private long intervalMillis;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!this.enabled) {
+            return;
+        }
+
+        Thread thread = new Thread(this, "completion-updater");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                // once every document is read, wait for the crawler to store more
+                if (!this.autoCompletion.isLoaded() || !update()) {
+                    Thread.sleep(this.intervalMillis);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Completion update failed, retrying later", e);
+                try {
+                    Thread.sleep(this.intervalMillis);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the documents stored since the last update and adds the new words
+     * found in them, rebuilding the vocabulary once.
+     *
+     * @return whether there may be more documents to read right away
+     */
+    public boolean update() {
+        long lastId = this.jedisIndex.getLastCompletionRead();
+
+        // stem to the words it comes from, with the number of documents of each
+        Map<String, Map<String, Integer>> words = new HashMap<>();
+        SnowballStemmer stemmer = new englishStemmer();
+        int read = 0;
+        boolean more = true;
+
+        while (more && read < MAX_DOCUMENTS_PER_UPDATE) {
+            long[] ids = this.documentDao.findIdsAfter(lastId, DOCUMENTS_PER_BATCH);
+
+            if (ids.length > 0) {
+                readBatch(ids, words, stemmer);
+                lastId = ids[ids.length - 1];
+                read += ids.length;
+            }
+            more = ids.length == DOCUMENTS_PER_BATCH;
+        }
+
+        if (read == 0) {
+            return false;
+        }
+
+        if (!words.isEmpty()) {
+            List<String> stems = new ArrayList<>(words.keySet());
+            int[] frequencies = this.jedisIndex.numberOfDocsContainingTerms(stems);
+
+            Map<String, Float> terms = new LinkedHashMap<>();
+            for (int i = 0; i < stems.size(); i++) {
+                if (frequencies[i] >= MIN_DOCUMENTS) {
+                    terms.put(mostFrequent(words.get(stems.get(i))), (float) frequencies[i]);
+                }
+            }
+
+            this.autoCompletion.addTerms(terms);
+            log.info("Added {} indexed words from {} documents to the completion vocabulary", terms.size(), read);
+        }
+
+        // only once the words are in, so a failed update reads the documents again
+        this.jedisIndex.setLastCompletionRead(lastId);
+
+        return more;
+    }
+
+    private void readBatch(long[] ids, Map<String, Map<String, Integer>> words, SnowballStemmer stemmer) {
+        for (long id : ids) {
+            byte[] text = this.documentDao.readBytes(id, 0, MAX_TEXT_BYTES);
+            Set<String> seen = new HashSet<>();
+
+            // the crawler stores the text as its words joined by spaces
+            for (String word : new String(text, StandardCharsets.UTF_8).split("\\s+")) {
+                word = word.toLowerCase();
+                if (!isWord(word) || !seen.add(word)) {
+                    continue;
+                }
+
+                stemmer.setCurrent(word);
+                stemmer.stem();
+                String stem = stemmer.getCurrent();
+
+                if (!this.autoCompletion.isKnown(stem)) {
+                    words.computeIfAbsent(stem, (key) -> new HashMap<>()).merge(word, 1, Integer::sum);
+                }
+            }
+        }
+    }
+
+    private static String mostFrequent(Map<String, Integer> words) {
+        String best = null;
+
+        for (Map.Entry<String, Integer> entry : words.entrySet()) {
+            if (best == null || entry.getValue() > words.get(best)) {
+                best = entry.getKey();
+            }
+        }
+
+        return best;
+    }
+
+    // the text also holds numbers, fragments of urls and the like
+    private static boolean isWord(String term) {
+        if (term.length() < 3 || term.length() > MAX_TERM_LENGTH) {
+            return false;
+        }
+
+        for (int i = 0; i < term.length(); i++) {
+            if (!Character.isLetter(term.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
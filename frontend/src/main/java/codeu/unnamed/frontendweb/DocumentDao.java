@@ -8,7 +8,7 @@ import javax.transaction.Transactional;
  * Created by fanzeyi on 8/4/16.
  */
 @Transactional
-public interface DocumentDao extends CrudRepository<Document, Long> {
+public interface DocumentDao extends CrudRepository<Document, Long>, DocumentDaoCustom {
 
     public Document findByHash(String hash);
 
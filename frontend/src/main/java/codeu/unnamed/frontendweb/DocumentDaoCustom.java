@@ -0,0 +1,48 @@
+package codeu.unnamed.frontendweb;
+
+import java.util.List;
+
+/**
+ * Queries on {@link Document} that cannot be derived from method names.
+ */
+public interface DocumentDaoCustom {
+
+    /**
+     * Loads id, url, title and at most prefixBytes of the body for the given
+     * ids, without transferring whole document bodies.
+     *
+     * @param ids document ids in rank order
+     * @param prefixBytes number of body bytes to load per document
+     * @return summaries in the same order as ids, null where an id is unknown
+     */
+    public List<DocumentSummary> findSummariesById(long[] ids, int prefixBytes);
+
+    /**
+     * Reads part of the body of a document in bounded chunks.
+     *
+     * @param id document id
+     * @param offset byte offset to start reading at
+     * @param maxBytes number of bytes after which reading stops
+     * @return up to maxBytes of the body, empty if the id is unknown
+     */
+    public String readText(long id, int offset, int maxBytes);
+
+    /**
+     * Reads a byte range of the body of each of several documents, in one
+     * query.
+     *
+     * @return text of each range in the same order, empty where an id is unknown
+     */
+    public List<String> readTexts(long[] ids, int[] offsets, int[] lengths);
+
+    /**
+     * Same as {@link #readText(long, int, int)}, without decoding the bytes.
+     */
+    public byte[] readBytes(long id, int offset, int maxBytes);
+
+    /**
+     * Lists document ids greater than the given one, in increasing order.
+     */
+    public long[] findIdsAfter(long id, int limit);
+
+}
@@ -0,0 +1,189 @@
+package codeu.unnamed.frontendweb;
+
+import codeu.unnamed.frontend.QueryTrace;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implementation of {@link DocumentDaoCustom}, picked up by Spring Data for
+ * {@link DocumentDao}.
+ */
+public class DocumentDaoImpl implements DocumentDaoCustom {
+    // keeps the IN (...) list well below what MySQL handles comfortably
+    private static final int CHUNK_SIZE = 500;
+
+    private static final int TEXT_CHUNK_BYTES = 64 * 1024;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<DocumentSummary> findSummariesById(long[] ids, int prefixBytes) {
+        Map<Long, DocumentSummary> summaries = new HashMap<>();
+
+        for (int start = 0; start < ids.length; start += CHUNK_SIZE) {
+            List<Long> chunk = new ArrayList<>();
+            for (int i = start; i < ids.length && i < start + CHUNK_SIZE; i++) {
+                chunk.add(ids[i]);
+            }
+
+            // native, so the prefix comes back as bytes and decode() can drop a
+            // character cut in half; one extra byte tells us whether the body
+            // goes on past the prefix
+            @SuppressWarnings("unchecked")
+            List<Object[]> rows = this.entityManager
+                    .createNativeQuery("SELECT id, url, title, SUBSTRING(text, 1, ?1) FROM urls WHERE id IN (?2)")
+                    .setParameter(1, prefixBytes + 1)
+                    .setParameter(2, chunk)
+                    .getResultList();
+
+            long bytes = 0;
+            for (Object[] row : rows) {
+                byte[] prefix = toBytes(row[3]);
+                bytes += prefix.length;
+                boolean truncated = prefix.length > prefixBytes;
+                byte[] text = Arrays.copyOf(prefix, wholeCharacters(prefix, Math.min(prefix.length, prefixBytes)));
+
+                long id = ((Number) row[0]).longValue();
+                summaries.put(id, new DocumentSummary(id, (String) row[1], (String) row[2], text, truncated));
+            }
+            QueryTrace.sqlCall(bytes);
+        }
+
+        List<DocumentSummary> result = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            result.add(summaries.get(id));
+        }
+
+        return result;
+    }
+
+    @Override
+    public String readText(long id, int offset, int maxBytes) {
+        byte[] bytes = readBytes(id, offset, maxBytes);
+        return decode(bytes, bytes.length);
+    }
+
+    @Override
+    public List<String> readTexts(long[] ids, int[] offsets, int[] lengths) {
+        String[] texts = new String[ids.length];
+        Arrays.fill(texts, "");
+
+        if (ids.length == 0) {
+            return Arrays.asList(texts);
+        }
+
+        // one select per range, sent as a single statement
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append("SELECT ").append(i).append(", SUBSTRING(text, ?").append(3 * i + 1)
+                    .append(", ?").append(3 * i + 2).append(") FROM urls WHERE id = ?").append(3 * i + 3);
+        }
+
+        Query query = this.entityManager.createNativeQuery(sql.toString());
+        for (int i = 0; i < ids.length; i++) {
+            query.setParameter(3 * i + 1, offsets[i] + 1);
+            query.setParameter(3 * i + 2, lengths[i]);
+            query.setParameter(3 * i + 3, ids[i]);
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = query.getResultList();
+
+        long bytes = 0;
+        for (Object[] row : rows) {
+            byte[] text = toBytes(row[1]);
+            bytes += text.length;
+            texts[((Number) row[0]).intValue()] = decode(text, text.length);
+        }
+        QueryTrace.sqlCall(bytes);
+
+        return Arrays.asList(texts);
+    }
+
+    @Override
+    public byte[] readBytes(long id, int offset, int maxBytes) {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+
+        while (text.size() < maxBytes) {
+            int length = Math.min(TEXT_CHUNK_BYTES, maxBytes - text.size());
+
+            List<?> rows = this.entityManager
+                    .createNativeQuery("SELECT SUBSTRING(text, ?1, ?2) FROM urls WHERE id = ?3")
+                    .setParameter(1, offset + text.size() + 1)
+                    .setParameter(2, length)
+                    .setParameter(3, id)
+                    .getResultList();
+
+            if (rows.isEmpty()) {
+                QueryTrace.sqlCall(0);
+                break;
+            }
+
+            byte[] chunk = toBytes(rows.get(0));
+            QueryTrace.sqlCall(chunk.length);
+            text.write(chunk, 0, chunk.length);
+
+            if (chunk.length < length) {
+                break;
+            }
+        }
+
+        return text.toByteArray();
+    }
+
+    @Override
+    public long[] findIdsAfter(long id, int limit) {
+        List<Long> ids = this.entityManager
+                .createQuery("select d.id from Document d where d.id > :id order by d.id", Long.class)
+                .setParameter("id", id)
+                .setMaxResults(limit)
+                .getResultList();
+
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static byte[] toBytes(Object value) {
+        if (value == null) {
+            return new byte[0];
+        }
+        if (value instanceof byte[]) {
+            return (byte[]) value;
+        }
+        return value.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // decodes UTF-8, dropping a multi-byte character cut off at the end
+    private static String decode(byte[] bytes, int length) {
+        return new String(bytes, 0, wholeCharacters(bytes, length), StandardCharsets.UTF_8);
+    }
+
+    // length of the first bytes of UTF-8 that end on a whole character
+    private static int wholeCharacters(byte[] bytes, int length) {
+        int end = length;
+        int start = end;
+        while (start > 0 && start > end - 4 && (bytes[start - 1] & 0xC0) == 0x80) {
+            start--;
+        }
+        if (start > 0 && (bytes[start - 1] & 0x80) != 0) {
+            int lead = bytes[start - 1] & 0xFF;
+            int expected = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : 2;
+            if (end - (start - 1) < expected) {
+                end = start - 1;
+            }
+        }
+        return end;
+    }
+}
@@ -0,0 +1,102 @@
+package codeu.unnamed.frontendweb;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lightweight view of a {@link Document} for result pages.
+ *
+ * Only carries a bounded prefix of the body; the rest is read through the
+ * loader, a range at a time, with {@link #readText(int, int)}.
+ */
+public class DocumentSummary {
+    private long id;
+
+    private String url;
+
+    private String title;
+
+    private String textPrefix;
+
+    // bytes textPrefix was decoded from
+    private byte[] prefix;
+
+    private boolean truncated;
+
+    private TextLoader textLoader;
+
+    /**
+     * Reads part of a document body on demand.
+     */
+    public interface TextLoader {
+        /**
+         * @param offset byte offset to start reading at
+         * @param maxBytes number of bytes to read at most
+         */
+        public String read(int offset, int maxBytes);
+    }
+
+    /**
+     * @param prefix first bytes of the body, ending on a whole character
+     * @param truncated whether the body goes on past the prefix
+     */
+    public DocumentSummary(long id, String url, String title, byte[] prefix, boolean truncated) {
+        this.id = id;
+        this.url = url;
+        this.title = title;
+        this.prefix = prefix;
+        this.textPrefix = new String(prefix, StandardCharsets.UTF_8);
+        this.truncated = truncated;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getTextPrefix() {
+        return textPrefix;
+    }
+
+    /**
+     * Whether the document body is longer than {@link #getTextPrefix()}.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public void setTextLoader(TextLoader textLoader) {
+        this.textLoader = textLoader;
+    }
+
+    /**
+     * Reads a byte range of the body, or what the prefix holds of it when no
+     * loader is set.
+     */
+    public String readText(int offset, int maxBytes) {
+        if (textLoader == null) {
+            return offset == 0 ? textPrefix : "";
+        }
+
+        return textLoader.read(offset, maxBytes);
+    }
+
+    /**
+     * Returns a byte range of the body if the loaded prefix holds all of it.
+     *
+     * @return the text of the range, or null if it goes past the prefix
+     */
+    public String readPrefix(int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > prefix.length) {
+            return null;
+        }
+
+        return new String(prefix, offset, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,167 @@
+package codeu.unnamed.frontendweb;
+
+import codeu.unnamed.frontend.ImpactRanking;
+import codeu.unnamed.frontend.IndexStatistics;
+import codeu.unnamed.frontend.JedisIndex;
+import codeu.unnamed.frontend.PostingCache;
+import codeu.unnamed.frontend.PostingList;
+import codeu.unnamed.frontend.RankingFunction;
+import codeu.unnamed.frontend.RankingFunctions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.ScanResult;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Background stage that stores the postings of every indexed term scored
+ * with the part of BM25 that doesn't depend on the query, ranked by that
+ * impact, for queries ranked by {@link ImpactRanking}.
+ *
+ * Impacts depend on the size of the collection and its average document
+ * length, so they drift as documents are indexed. A term is rescored when
+ * its number of postings changed or the collection grew by more than a
+ * tenth since its impacts were computed. Enabled by search.impact.enabled.
+ */
+@Component
+public class ImpactIndexer implements ApplicationListener<ApplicationReadyEvent>, Runnable {
+    private static final Logger log = LoggerFactory.getLogger(ImpactIndexer.class);
+
+    private static final int SCAN_COUNT = 1000;
+
+    // postings read per round-trip
+    private static final int CHUNK_SIZE = 10000;
+
+    // growth of the collection after which impacts are recomputed
+    private static final double MAX_GROWTH = 0.1;
+
+    private static final long IDLE_MILLIS = 60 * 1000;
+
+    @Autowired
+    private JedisIndex jedisIndex;
+
+    @Autowired
+    private PostingCache postingCache;
+
+    @Autowired
+    private RankingFunctions rankingFunctions;
+
+    @Value("${search.impact.enabled:false}")
+    private boolean enabled;
+
+    // where the scan of the term set stopped, "0" between passes
+    private String cursor = "0";
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!this.enabled) {
+            return;
+        }
+
+        Thread thread = new Thread(this, "impact-indexer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                // a finished pass waits for the crawler to index more postings
+                if (!indexBatch()) {
+                    Thread.sleep(IDLE_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Impact indexing failed, retrying later", e);
+                try {
+                    Thread.sleep(IDLE_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Rescores the stale terms on the next page of the term set.
+     *
+     * @return false once the scan has reached the end of the set
+     */
+    public boolean indexBatch() {
+        ScanResult<String> page = this.jedisIndex.scanTerms(this.cursor, SCAN_COUNT);
+        this.cursor = page.getStringCursor();
+
+        List<String> terms = page.getResult();
+        int[] documents = this.jedisIndex.numberOfDocsContainingTerms(terms);
+        List<String> stamps = this.jedisIndex.getImpactStamps(terms);
+        int totalDocuments = this.jedisIndex.getTotalDocuments();
+        double averageDocLength = this.jedisIndex.getAverageDocLength();
+
+        boolean changed = false;
+        for (int i = 0; i < terms.size(); i++) {
+            if (isStale(stamps.get(i), documents[i], totalDocuments)) {
+                PostingList impacts = build(terms.get(i), documents[i], totalDocuments, averageDocLength);
+                this.jedisIndex.putImpacts(terms.get(i), impacts, documents[i] + " " + totalDocuments);
+                changed = true;
+            }
+        }
+
+        // cached impacts of rescored terms would otherwise outlive them
+        if (changed) {
+            this.postingCache.clear();
+        }
+
+        return !"0".equals(this.cursor);
+    }
+
+    private static boolean isStale(String stamp, int documents, int totalDocuments) {
+        if (stamp == null) {
+            return true;
+        }
+
+        String[] fields = stamp.split(" ");
+        return Integer.parseInt(fields[0]) != documents
+                || totalDocuments > Integer.parseInt(fields[1]) * (1 + MAX_GROWTH);
+    }
+
+    private PostingList build(String term, int documents, int totalDocuments, double averageDocLength) {
+        IndexStatistics stats = new IndexStatistics(totalDocuments, averageDocLength, term, documents);
+        RankingFunction.TermScorer scorer = this.rankingFunctions.getImpact().impacts(stats, term);
+
+        int[] ordinals = new int[documents];
+        int[] impacts = new int[documents];
+        int count = 0;
+
+        while (count < documents) {
+            PostingList postings = this.jedisIndex.getPostings(term, count, count + CHUNK_SIZE - 1);
+            if (postings.size() == 0) {
+                break;
+            }
+
+            int[] chunk = new int[Math.min(postings.size(), documents - count)];
+            for (int i = 0; i < chunk.length; i++) {
+                chunk[i] = postings.getDocument(i);
+            }
+
+            int[] lengths = this.jedisIndex.getDocumentLengths(chunk);
+            double[] scores = new double[chunk.length];
+            scorer.score(postings.copyFrequencies(), lengths, scores, chunk.length);
+            for (int i = 0; i < chunk.length; i++) {
+                ordinals[count + i] = chunk[i];
+                impacts[count + i] = ImpactRanking.quantize(scores[i]);
+            }
+            count += chunk.length;
+        }
+
+        // Redis keeps them ranked by impact
+        return new PostingList(Arrays.copyOf(ordinals, count), Arrays.copyOf(impacts, count));
+    }
+}
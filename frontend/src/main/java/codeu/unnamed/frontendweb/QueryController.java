@@ -1,13 +1,22 @@
 package codeu.unnamed.frontendweb;
 
+import codeu.unnamed.frontend.JedisIndex;
+import codeu.unnamed.frontend.QueryMetrics;
+import codeu.unnamed.frontend.QueryTrace;
+import codeu.unnamed.frontend.RankingFunction;
+import codeu.unnamed.frontend.RankingFunctions;
 import codeu.unnamed.frontend.WebSearch;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.tartarus.snowball.SnowballStemmer;
 import org.tartarus.snowball.ext.englishStemmer;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -21,27 +30,118 @@ public class QueryController {
     @Autowired
     private DocumentDao documentDao;
 
-    private static WebSearch search = new WebSearch();
+    @Autowired
+    private WebSearch search;
+
+    @Autowired
+    private JedisIndex jedisIndex;
+
+    @Autowired
+    private QueryMetrics queryMetrics;
+
+    @Autowired
+    private RankingFunctions rankingFunctions;
+
+    @Value("${snippet.index.enabled:false}")
+    private boolean snippetIndexEnabled;
+
+    private static final int PAGE_SIZE = 20;
+
+    // body bytes loaded with every result, enough for a summary in most documents
+    private static final int TEXT_PREFIX_BYTES = 4 * 1024;
+
+    // body bytes read at most when the summary isn't found in the prefix
+    private static final int MAX_TEXT_BYTES = 256 * 1024;
 
     @RequestMapping("/query")
-    public List<ResultEntry> query(@RequestParam(value="query", required = true) String query, @RequestParam(value="offset", required = false, defaultValue = "0") String offset) {
+    public List<ResultEntry> query(@RequestParam(value="query", required = true) String query, @RequestParam(value="offset", required = false, defaultValue = "0") int offset,
+                                   @RequestParam(value="scoring", required = false) String scoring) {
+        QueryTrace trace = QueryTrace.begin("query", query);
+        try {
+            return search(query, offset, ranking(scoring));
+        } finally {
+            this.queryMetrics.record(trace);
+        }
+    }
+
+    private RankingFunction ranking(String scoring) {
+        if (scoring == null) {
+            return this.rankingFunctions.getDefault();
+        }
+
+        try {
+            return this.rankingFunctions.get(scoring);
+        } catch (IllegalArgumentException e) {
+            throw new UnknownScoringException(e.getMessage());
+        }
+    }
+
+    // a scoring the client asked for, rather than a failure of the search
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    static class UnknownScoringException extends RuntimeException {
+        UnknownScoringException(String message) {
+            super(message);
+        }
+    }
+
+    private List<ResultEntry> search(String query, int offset, RankingFunction ranking) {
         // TODO: process query with snowball here
+        long stageStart = System.nanoTime();
         String[] terms = processQuery(query);
+        QueryTrace.record(QueryTrace.Stage.STEM, stageStart);
 
         // TODO: fill in here to get result from INDEX
 
-        List<String> result = search.processQueries(terms);
+        long[] result = search.processQueries(terms, ranking, Math.max(offset, 0), PAGE_SIZE);
+
+        SnippetGenerator snippets = new SnippetGenerator(terms);
+
+        stageStart = System.nanoTime();
+        List<DocumentSummary> documents = this.documentDao.findSummariesById(result, TEXT_PREFIX_BYTES);
+        List<byte[]> snippetIndexes = this.snippetIndexEnabled ? this.jedisIndex.getSnippetIndexes(result) : null;
+        QueryTrace.record(QueryTrace.Stage.HYDRATE, stageStart);
+
+        stageStart = System.nanoTime();
+        String[] indexedSummaries = new String[documents.size()];
+
+        if (snippetIndexes != null) {
+            List<DocumentSummary> indexed = new ArrayList<>();
+            List<SnippetIndex> indexes = new ArrayList<>();
+            List<Integer> positions = new ArrayList<>();
+
+            for (int i = 0; i < documents.size(); i++) {
+                if (documents.get(i) != null && snippetIndexes.get(i) != null) {
+                    indexed.add(documents.get(i));
+                    indexes.add(SnippetIndex.decode(snippetIndexes.get(i)));
+                    positions.add(i);
+                }
+            }
+
+            String[] summaries = snippets.generate(indexed, indexes, this.documentDao::readTexts);
+            for (int n = 0; n < summaries.length; n++) {
+                indexedSummaries[positions.get(n)] = summaries[n];
+            }
+        }
+
+        List<ResultEntry> entries = new ArrayList<>(documents.size());
 
-        return result.stream().map((r) -> {
-            long id = Long.valueOf(r);
-            Document doc = this.documentDao.findById(id);
+        for (int i = 0; i < documents.size(); i++) {
+            DocumentSummary doc = documents.get(i);
 
             if(doc == null) {
-                return null;
+                entries.add(null);
+                continue;
             }
 
-            return new ResultEntry(doc, terms);
-        }).collect(Collectors.toList());
+            long id = doc.getId();
+            doc.setTextLoader((start, maxBytes) -> start >= MAX_TEXT_BYTES ? ""
+                    : this.documentDao.readText(id, start, Math.min(maxBytes, MAX_TEXT_BYTES - start)));
+
+            entries.add(new ResultEntry(doc, snippets, indexedSummaries[i]));
+        }
+        QueryTrace.record(QueryTrace.Stage.SNIPPETS, stageStart);
+
+        return entries;
     }
 
     private String[] processQuery(String query) {
@@ -60,15 +160,32 @@ public class QueryController {
 
     @RequestMapping("/complete")
     public List<String> complete(@RequestParam(value="query", required=true) String query) {
-        String[] terms = query.split(" ");
+        QueryTrace trace = QueryTrace.begin("complete", query);
+        try {
+            return completeLastWord(query);
+        } finally {
+            this.queryMetrics.record(trace);
+        }
+    }
+
+    private List<String> completeLastWord(String query) {
+        // only the last word is completed, the words before it are kept as typed
+        int end = query.length();
+        while (end > 0 && query.charAt(end - 1) == ' ') {
+            end--;
+        }
+        int split = query.lastIndexOf(' ', end - 1);
+
+        long start = System.nanoTime();
+        List<String> result = this.autoCompletion.complete(query.substring(split + 1, end));
+        QueryTrace.record(QueryTrace.Stage.COMPLETE, start);
 
-        List<String> result = this.autoCompletion.complete(terms[terms.length-1]);
+        if (split < 0) {
+            return result;
+        }
 
-        result = result.stream().map((s) -> {
-            terms[terms.length-1] = s;
-            return String.join(" ", terms);
-        }).collect(Collectors.toList());
+        String head = query.substring(0, split + 1);
 
-        return result;
+        return result.stream().map((s) -> head + s).collect(Collectors.toList());
     }
 }
@@ -0,0 +1,38 @@
+package codeu.unnamed.frontendweb;
+
+import codeu.unnamed.frontend.JedisIndex;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+/**
+ * Builds the Redis connection pool shared by all request threads from the
+ * spring.redis.* properties.
+ */
+@Configuration
+public class RedisConfig {
+    @Bean(destroyMethod = "close")
+    public JedisPool jedisPool(RedisProperties properties) {
+        RedisProperties.Pool pool = properties.getPool();
+
+        if (pool == null) {
+            pool = new RedisProperties.Pool();
+        }
+
+        JedisPoolConfig config = new JedisPoolConfig();
+        config.setMaxTotal(pool.getMaxActive());
+        config.setMaxIdle(pool.getMaxIdle());
+        config.setMinIdle(pool.getMinIdle());
+        config.setMaxWaitMillis(pool.getMaxWait());
+
+        return new JedisPool(config, properties.getHost(), properties.getPort(),
+                properties.getTimeout(), properties.getPassword(), properties.getDatabase());
+    }
+
+    @Bean
+    public JedisIndex jedisIndex(JedisPool jedisPool) {
+        return new JedisIndex(jedisPool);
+    }
+}
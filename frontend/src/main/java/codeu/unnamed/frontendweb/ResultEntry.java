@@ -4,19 +4,27 @@ package codeu.unnamed.frontendweb;
  * Created by fanzeyi on 8/9/16.
  */
 public class ResultEntry {
-    private Document document;
-    
-    private String[] queries;
+    // bytes of the body scanned at a time when the prefix has no match
+    private static final int CHUNK_BYTES = 64 * 1024;
+
+    private DocumentSummary document;
+
+    private SnippetGenerator snippets;
 
     private String summary;
 
-    private static final int WINDOW_LENGTH = 50;
+    public ResultEntry(DocumentSummary document, SnippetGenerator snippets) {
+        this(document, snippets, null);
+    }
 
-    public ResultEntry(Document document, String[] query) {
+    /**
+     * @param indexedSummary summary already picked from the snippet index, or null
+     */
+    public ResultEntry(DocumentSummary document, SnippetGenerator snippets, String indexedSummary) {
         this.document = document;
-        this.queries = query;
+        this.snippets = snippets;
 
-        this.summary = generateSummary();
+        this.summary = indexedSummary != null ? indexedSummary : generateSummary();
     }
 
     public String getTitle() {
@@ -31,83 +39,61 @@ public class ResultEntry {
         return summary;
     }
 
-    private static int circularIndex(int i) {
-        if(i < 0) {
-            return (i + WINDOW_LENGTH);
-        }
-        return i % WINDOW_LENGTH;
-    }
-
+    /**
+     * Picks the summary from the loaded prefix of the body. When the prefix
+     * doesn't mention the query at all, the body is read a chunk at a time,
+     * stopping at the first chunk that does.
+     */
     public String generateSummary() {
-        String[] words = document.getText().split(" ");
-
-        int rank = 0;
+        String summary = snippets.generate(document.getTextPrefix(), document.isTruncated());
+        int offset = 0;
 
-        // need a circular array
-        int[] mapping = new int[WINDOW_LENGTH];
+        while (summary == null) {
+            String chunk = document.readText(offset, CHUNK_BYTES);
+            summary = snippets.generate(chunk, true);
 
-        // first [length of window] words
-        for( int i = 0; i < words.length && i < WINDOW_LENGTH; i++ ) {
-            if (arrayContains(queries, words[i])) {
-                if (i == 0) {
-                    mapping[i] = 1;
-                } else {
-                    mapping[i] = mapping[i-1] + 1;
-                }
-
-                rank += mapping[i];
+            // a cut multi-byte character is dropped, so a full chunk may be 3 bytes short
+            int end = wordsEnd(chunk);
+            if (end == 0 || utf8Length(chunk, chunk.length()) < CHUNK_BYTES - 3) {
+                break;
             }
-        }
 
-        if( words.length < WINDOW_LENGTH ) {
-            return String.join(" ", words);
+            // the word cut off at the end is read again with the next chunk
+            offset += utf8Length(chunk, end);
         }
 
-        int index = 0;
-        int highest = rank;
-
-        int end = 0; // end position of circular
-
-        for( int i = WINDOW_LENGTH; i < words.length; i++ ) {
-            rank -= mapping[end];
-
-            if (arrayContains(queries, words[i])) {
-                mapping[end] = mapping[circularIndex(end-1)] + 1;
-            } else {
-                mapping[end] = 0;
-            }
-
-            rank += mapping[end];
-            end = circularIndex(end + 1);
-
-            if (rank > highest) {
-                highest = rank;
-                index = i;
-            }
-        }
-
-        if (index > 25) {
-            index -= 25;
-        } else {
-            index = 0;
+        if (summary == null) {
+            summary = snippets.generate(document.getTextPrefix(), false);
         }
 
-        String[] result = new String[WINDOW_LENGTH];
+        return summary;
+    }
 
-        for ( int i = index; i < words.length && i < index + WINDOW_LENGTH; i++ ) {
-            result[i-index] = words[i];
+    // end of the last whole word, or the end of the text if it has no whitespace
+    private static int wordsEnd(String text) {
+        for (int i = text.length(); i > 0; i--) {
+            if (Character.isWhitespace(text.charAt(i - 1))) {
+                return i;
+            }
         }
-
-        return String.join(" ", result);
+        return text.length();
     }
 
-    private static boolean arrayContains(String[] array, String target) {
-        for (String element : array) {
-            if (target.equalsIgnoreCase(element)) {
-                return true;
+    private static int utf8Length(String text, int end) {
+        int length = 0;
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
             }
         }
-
-        return false;
+        return length;
     }
 }
@@ -0,0 +1,132 @@
+package codeu.unnamed.frontendweb;
+
+import codeu.unnamed.frontend.JedisIndex;
+import codeu.unnamed.frontend.PostingList;
+import codeu.unnamed.frontend.TermBound;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.ScanResult;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Background stage that stores a {@link TermBound} for every indexed term,
+ * letting queries stop reading postings once the top results are certain.
+ *
+ * Walks the set of indexed terms and recomputes the bound of each term whose
+ * bound was computed at another generation of the index, as any document
+ * indexed since may have changed its weights or lengths. Terms without an
+ * up to date bound are still ranked exactly, only with weaker pruning.
+ * Enabled by search.max-score.enabled.
+ */
+@Component
+public class ScoreBoundIndexer implements ApplicationListener<ApplicationReadyEvent>, Runnable {
+    private static final Logger log = LoggerFactory.getLogger(ScoreBoundIndexer.class);
+
+    private static final int SCAN_COUNT = 1000;
+
+    // postings read per round-trip, a whole number of blocks
+    private static final int CHUNK_SIZE = 80 * TermBound.BLOCK_SIZE;
+
+    // terms with fewer postings are always read to the end
+    private static final int MIN_DOCUMENTS = TermBound.BLOCK_SIZE;
+
+    private static final long IDLE_MILLIS = 60 * 1000;
+
+    @Autowired
+    private JedisIndex jedisIndex;
+
+    @Value("${search.max-score.enabled:false}")
+    private boolean enabled;
+
+    // where the scan of the term set stopped, "0" between passes
+    private String cursor = "0";
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!this.enabled) {
+            return;
+        }
+
+        Thread thread = new Thread(this, "score-bound-indexer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                // a finished pass waits for the crawler to index more postings
+                if (!indexBatch()) {
+                    Thread.sleep(IDLE_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Score bound indexing failed, retrying later", e);
+                try {
+                    Thread.sleep(IDLE_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the bounds of the terms on the next page of the term set.
+     *
+     * @return false once the scan has reached the end of the set
+     */
+    public boolean indexBatch() {
+        ScanResult<String> page = this.jedisIndex.scanTerms(this.cursor, SCAN_COUNT);
+        this.cursor = page.getStringCursor();
+
+        // read first, so postings indexed while the bounds are built make them stale
+        long generation = this.jedisIndex.getGeneration();
+        List<String> terms = page.getResult();
+        int[] documents = this.jedisIndex.numberOfDocsContainingTerms(terms);
+        Map<String, TermBound> bounds = this.jedisIndex.getTermBounds(terms);
+
+        for (int i = 0; i < terms.size(); i++) {
+            TermBound bound = bounds.get(terms.get(i));
+            if (documents[i] >= MIN_DOCUMENTS && (bound == null || bound.getGeneration() != generation)) {
+                this.jedisIndex.putTermBound(terms.get(i), build(terms.get(i), documents[i], generation));
+            }
+        }
+
+        return !"0".equals(this.cursor);
+    }
+
+    private TermBound build(String term, int documents, long generation) {
+        int[] lengths = new int[documents];
+        int count = 0;
+
+        while (count < documents) {
+            PostingList postings = this.jedisIndex.getPostings(term, count, count + CHUNK_SIZE - 1);
+            if (postings.size() == 0) {
+                break;
+            }
+
+            int[] ordinals = new int[postings.size()];
+            for (int i = 0; i < ordinals.length; i++) {
+                ordinals[i] = postings.getDocument(i);
+            }
+
+            int[] chunk = this.jedisIndex.getDocumentLengths(ordinals);
+            int length = Math.min(chunk.length, documents - count);
+            System.arraycopy(chunk, 0, lengths, count, length);
+            count += length;
+        }
+
+        return TermBound.build(Arrays.copyOf(lengths, count), generation);
+    }
+}
@@ -0,0 +1,391 @@
+package codeu.unnamed.frontendweb;
+
+import org.tartarus.snowball.SnowballStemmer;
+import org.tartarus.snowball.ext.englishStemmer;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Picks the summary window of a document in a single pass over its text.
+ *
+ * The text is never split: words are found by scanning for whitespace and
+ * only their offsets are remembered, in a ring the size of the window. Each
+ * distinct word is stemmed once per query; later occurrences are looked up
+ * by their characters in a memo, without allocating. Scanning stops after a
+ * fixed number of characters so huge documents stay cheap.
+ *
+ * Not thread-safe; create one per query.
+ */
+public class SnippetGenerator {
+    public static final int WINDOW_LENGTH = 50;
+
+    private static final int DEFAULT_MAX_SCAN_CHARS = 128 * 1024;
+
+    private Set<String> stems;
+
+    private int[] stemHashes;
+
+    // words stemmed so far and whether they match, open addressing on their characters
+    private char[][] seenWords;
+
+    private boolean[] seenMatches;
+
+    private int seenCount;
+
+    private SnowballStemmer stemmer;
+
+    private int maxScanChars;
+
+    private char[] word;
+
+    public SnippetGenerator(String[] stems) {
+        this(stems, DEFAULT_MAX_SCAN_CHARS);
+    }
+
+    /**
+     * @param stems stemmed query terms
+     * @param maxScanChars number of characters after which scanning stops
+     */
+    public SnippetGenerator(String[] stems, int maxScanChars) {
+        this.stems = new HashSet<>();
+        this.seenWords = new char[256][];
+        this.seenMatches = new boolean[256];
+        this.stemmer = new englishStemmer();
+        this.maxScanChars = maxScanChars;
+        this.word = new char[32];
+
+        for (String stem : stems) {
+            if (stem.isEmpty()) {
+                continue;
+            }
+            String lower = stem.toLowerCase();
+            this.stems.add(lower);
+        }
+
+        this.stemHashes = this.stems.stream().mapToInt(String::hashCode).toArray();
+    }
+
+    /**
+     * Returns the best window of each document of a page that has a snippet
+     * index. Windows the loaded prefix holds are cut out of it; the others
+     * are read together in one call.
+     *
+     * @param documents documents of the page
+     * @param indexes snippet index of each document, null where there is none
+     * @param reader reads byte ranges of the bodies of several documents
+     * @return window of each document, null where none was found
+     */
+    public String[] generate(List<DocumentSummary> documents, List<SnippetIndex> indexes, TextReader reader) {
+        String[] summaries = new String[documents.size()];
+        int[][] windows = new int[documents.size()][];
+        int unread = 0;
+
+        for (int i = 0; i < summaries.length; i++) {
+            SnippetIndex index = indexes.get(i);
+            if (index == null || (windows[i] = window(index)) == null) {
+                continue;
+            }
+
+            int[] window = windows[i];
+            String text = documents.get(i).readPrefix(window[1], window[2] - window[1]);
+            if (text != null) {
+                summaries[i] = words(text, window[0] % SnippetIndex.CHECKPOINT_INTERVAL, WINDOW_LENGTH);
+                windows[i] = null;
+            } else {
+                unread++;
+            }
+        }
+
+        if (unread == 0) {
+            return summaries;
+        }
+
+        int[] positions = new int[unread];
+        long[] ids = new long[unread];
+        int[] offsets = new int[unread];
+        int[] lengths = new int[unread];
+        int n = 0;
+
+        for (int i = 0; i < summaries.length; i++) {
+            if (windows[i] != null) {
+                positions[n] = i;
+                ids[n] = documents.get(i).getId();
+                offsets[n] = windows[i][1];
+                lengths[n] = windows[i][2] - windows[i][1];
+                n++;
+            }
+        }
+
+        List<String> texts = reader.read(ids, offsets, lengths);
+        for (n = 0; n < unread; n++) {
+            String text = texts.get(n);
+            if (!text.isEmpty()) {
+                int i = positions[n];
+                summaries[i] = words(text, windows[i][0] % SnippetIndex.CHECKPOINT_INTERVAL, WINDOW_LENGTH);
+            }
+        }
+
+        return summaries;
+    }
+
+    /**
+     * Returns the best window of a document in its precomputed snippet index,
+     * as its first word and the range of bytes it lies in.
+     *
+     * @return first word, start offset and end offset, or null if no query
+     *         term occurs in the index
+     */
+    public int[] window(SnippetIndex index) {
+        int[] positions = new int[0];
+        for (int hash : this.stemHashes) {
+            positions = mergeSorted(positions, index.getPositions(hash));
+        }
+
+        if (positions.length == 0) {
+            return null;
+        }
+
+        // same ranking as the scan: sum of match streaks within one window
+        int[] streaks = new int[positions.length];
+        int rank = 0;
+        int highest = 0;
+        int best = 0;
+        int tail = 0;
+
+        for (int j = 0; j < positions.length; j++) {
+            streaks[j] = j > 0 && positions[j - 1] == positions[j] - 1 ? streaks[j - 1] + 1 : 1;
+            rank += streaks[j];
+
+            while (positions[tail] <= positions[j] - WINDOW_LENGTH) {
+                rank -= streaks[tail++];
+            }
+
+            if (rank > highest) {
+                highest = rank;
+                best = positions[j];
+            }
+        }
+
+        int first = best < WINDOW_LENGTH ? 0 : best - WINDOW_LENGTH / 2;
+        int last = Math.min(first + WINDOW_LENGTH, index.getWordCount()) - 1;
+
+        return new int[] {first, index.getStartOffset(first), index.getEndOffset(last)};
+    }
+
+    /**
+     * Returns the best window of the text, centered on where query terms are
+     * densest.
+     *
+     * @param requireMatch return null instead of a window without any query term
+     */
+    public String generate(CharSequence text, boolean requireMatch) {
+        int length = Math.min(text.length(), this.maxScanChars);
+
+        // ring of the start offsets and match streaks of the last words
+        int[] starts = new int[WINDOW_LENGTH];
+        int[] mapping = new int[WINDOW_LENGTH];
+
+        int rank = 0;
+        int highest = 0;
+        int count = 0;
+
+        int snippetWord = 0;
+        int snippetStart = 0;
+        int snippetEnd = -1;
+        int lastEnd = 0;
+
+        int i = 0;
+        while (i < length) {
+            while (i < length && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (i >= length) {
+                break;
+            }
+
+            int start = i;
+            while (i < length && !Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+
+            int slot = count % WINDOW_LENGTH;
+            rank -= mapping[slot];
+            mapping[slot] = matches(text, start, i) ? mapping[(slot + WINDOW_LENGTH - 1) % WINDOW_LENGTH] + 1 : 0;
+            rank += mapping[slot];
+            starts[slot] = start;
+
+            if (count < WINDOW_LENGTH) {
+                highest = rank;
+            } else if (rank > highest) {
+                highest = rank;
+                // show the words leading up to the densest window too
+                snippetWord = count > WINDOW_LENGTH / 2 ? count - WINDOW_LENGTH / 2 : 0;
+                snippetStart = starts[snippetWord % WINDOW_LENGTH];
+                snippetEnd = -1;
+            }
+
+            if (count == snippetWord + WINDOW_LENGTH - 1) {
+                snippetEnd = i;
+            }
+
+            lastEnd = i;
+            count++;
+        }
+
+        if (highest == 0 && requireMatch) {
+            return null;
+        }
+
+        if (snippetEnd == -1) {
+            snippetEnd = lastEnd;
+        }
+
+        return text.subSequence(snippetStart, snippetEnd).toString();
+    }
+
+    // returns count words of text after skipping the first skip words
+    private static String words(String text, int skip, int count) {
+        int start = -1;
+        int end = 0;
+        int word = 0;
+        int i = 0;
+
+        while (i < text.length() && word < skip + count) {
+            while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (i >= text.length()) {
+                break;
+            }
+            if (word == skip) {
+                start = i;
+            }
+            while (i < text.length() && !Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            end = i;
+            word++;
+        }
+
+        return start == -1 ? "" : text.substring(start, end);
+    }
+
+    private static int[] mergeSorted(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+
+        while (i < a.length || j < b.length) {
+            int next;
+            if (j >= b.length || (i < a.length && a[i] <= b[j])) {
+                next = a[i++];
+            } else {
+                next = b[j++];
+            }
+            if (n == 0 || result[n - 1] != next) {
+                result[n++] = next;
+            }
+        }
+
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    private boolean matches(CharSequence text, int start, int end) {
+        int length = end - start;
+
+        if (length > this.word.length) {
+            this.word = new char[Math.max(length, this.word.length * 2)];
+        }
+
+        for (int i = 0; i < length; i++) {
+            this.word[i] = Character.toLowerCase(text.charAt(start + i));
+        }
+
+        // no cheap prefilter: the stemmer rewrites words like dying to die,
+        // so a word can't be rejected before it is stemmed
+        int mask = this.seenWords.length - 1;
+        int slot = hash(this.word, length) & mask;
+        char[] seen;
+
+        while ((seen = this.seenWords[slot]) != null) {
+            if (sameWord(seen, this.word, length)) {
+                return this.seenMatches[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        this.stemmer.setCurrent(new String(this.word, 0, length));
+        this.stemmer.stem();
+        boolean match = this.stems.contains(this.stemmer.getCurrent());
+
+        // keep the memo at most half full
+        if ((this.seenCount + 1) * 2 > this.seenWords.length) {
+            growSeen();
+            mask = this.seenWords.length - 1;
+            slot = hash(this.word, length) & mask;
+            while (this.seenWords[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        this.seenWords[slot] = Arrays.copyOf(this.word, length);
+        this.seenMatches[slot] = match;
+        this.seenCount++;
+
+        return match;
+    }
+
+    private void growSeen() {
+        char[][] words = this.seenWords;
+        boolean[] matches = this.seenMatches;
+        this.seenWords = new char[words.length * 2][];
+        this.seenMatches = new boolean[words.length * 2];
+        int mask = this.seenWords.length - 1;
+
+        for (int n = 0; n < words.length; n++) {
+            if (words[n] == null) {
+                continue;
+            }
+            int slot = hash(words[n], words[n].length) & mask;
+            while (this.seenWords[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            this.seenWords[slot] = words[n];
+            this.seenMatches[slot] = matches[n];
+        }
+    }
+
+    private static int hash(char[] word, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + word[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean sameWord(char[] seen, char[] word, int length) {
+        if (seen.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (seen[i] != word[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads byte ranges of the bodies of several documents at once.
+     */
+    public interface TextReader {
+        /**
+         * @return text of each range in order, empty where it can't be read
+         */
+        List<String> read(long[] ids, int[] offsets, int[] lengths);
+    }
+}
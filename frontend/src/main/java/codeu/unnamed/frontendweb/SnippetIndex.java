@@ -0,0 +1,252 @@
+package codeu.unnamed.frontendweb;
+
+import org.tartarus.snowball.SnowballStemmer;
+import org.tartarus.snowball.ext.englishStemmer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact positional index of one document body, used to pick a summary
+ * window without scanning the body at query time.
+ *
+ * Maps the hash of every stemmed word to the word numbers it occurs at, and
+ * keeps the byte offset of every {@value #CHECKPOINT_INTERVAL}th word so a
+ * window of words can be read back with one bounded read. The crawler
+ * strips punctuation before storing the body, so word numbers stand in for
+ * sentence boundaries.
+ */
+public class SnippetIndex {
+    public static final int CHECKPOINT_INTERVAL = 16;
+
+    private static final int VERSION = 1;
+
+    private int wordCount;
+
+    // byte offset of word i * CHECKPOINT_INTERVAL, then the end of the last word
+    private int[] checkpoints;
+
+    // sorted stem hashes and the word numbers of each
+    private int[] hashes;
+
+    private int[][] positions;
+
+    private SnippetIndex(int wordCount, int[] checkpoints, int[] hashes, int[][] positions) {
+        this.wordCount = wordCount;
+        this.checkpoints = checkpoints;
+        this.hashes = hashes;
+        this.positions = positions;
+    }
+
+    /**
+     * Builds the index from the UTF-8 body of a document.
+     *
+     * @param text UTF-8 bytes of the body
+     * @param maxWords number of words after which indexing stops
+     */
+    public static SnippetIndex build(byte[] text, int maxWords) {
+        SnowballStemmer stemmer = new englishStemmer();
+        Map<Integer, int[]> postings = new HashMap<>();
+        int[] checkpoints = new int[16];
+        int checkpointCount = 0;
+
+        int count = 0;
+        int lastEnd = 0;
+        int i = 0;
+
+        while (i < text.length && count < maxWords) {
+            while (i < text.length && isSpace(text[i])) {
+                i++;
+            }
+            if (i >= text.length) {
+                break;
+            }
+
+            int start = i;
+            while (i < text.length && !isSpace(text[i])) {
+                i++;
+            }
+
+            if (count % CHECKPOINT_INTERVAL == 0) {
+                if (checkpointCount == checkpoints.length) {
+                    checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+                }
+                checkpoints[checkpointCount++] = start;
+            }
+
+            stemmer.setCurrent(new String(text, start, i - start, StandardCharsets.UTF_8).toLowerCase());
+            stemmer.stem();
+
+            // first slot holds the number of positions in use
+            int[] list = postings.computeIfAbsent(stemmer.getCurrent().hashCode(), (hash) -> new int[4]);
+            if (list[0] + 1 == list.length) {
+                list = Arrays.copyOf(list, list.length * 2);
+                postings.put(stemmer.getCurrent().hashCode(), list);
+            }
+            list[++list[0]] = count;
+
+            lastEnd = i;
+            count++;
+        }
+
+        checkpoints = Arrays.copyOf(checkpoints, checkpointCount + 1);
+        checkpoints[checkpointCount] = lastEnd;
+
+        int[] hashes = postings.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        int[][] positions = new int[hashes.length][];
+        for (int h = 0; h < hashes.length; h++) {
+            int[] list = postings.get(hashes[h]);
+            positions[h] = Arrays.copyOfRange(list, 1, list[0] + 1);
+        }
+
+        return new SnippetIndex(count, checkpoints, hashes, positions);
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * Returns the word numbers the stem with the given hash occurs at.
+     */
+    public int[] getPositions(int hash) {
+        int h = Arrays.binarySearch(hashes, hash);
+        return h < 0 ? new int[0] : positions[h];
+    }
+
+    /**
+     * Returns the byte offset of the checkpointed word at or before the given word.
+     */
+    public int getStartOffset(int word) {
+        return checkpoints[Math.min(word / CHECKPOINT_INTERVAL, checkpoints.length - 1)];
+    }
+
+    /**
+     * Returns a byte offset at or after the end of the given word.
+     */
+    public int getEndOffset(int word) {
+        return checkpoints[Math.min(word / CHECKPOINT_INTERVAL + 1, checkpoints.length - 1)];
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        writeVarInt(out, VERSION);
+        writeVarInt(out, wordCount);
+
+        writeVarInt(out, checkpoints.length);
+        int previous = 0;
+        for (int offset : checkpoints) {
+            writeVarInt(out, offset - previous);
+            previous = offset;
+        }
+
+        writeVarInt(out, hashes.length);
+        for (int h = 0; h < hashes.length; h++) {
+            writeVarInt(out, hashes[h]);
+            writeVarInt(out, positions[h].length);
+            previous = 0;
+            for (int position : positions[h]) {
+                writeVarInt(out, position - previous);
+                previous = position;
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes an index written by {@link #encode()}.
+     *
+     * @return the index, or null if the bytes are in an unknown format or
+     *         malformed, in which case callers scan the text instead
+     */
+    public static SnippetIndex decode(byte[] data) {
+        try {
+            return read(data);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // throws IllegalArgumentException on truncated or inconsistent data
+    private static SnippetIndex read(byte[] data) {
+        int[] cursor = new int[1];
+
+        if (readVarInt(data, cursor) != VERSION) {
+            return null;
+        }
+
+        int wordCount = readVarInt(data, cursor);
+        check(wordCount >= 0);
+
+        // every entry takes at least one byte, which bounds the counts
+        int[] checkpoints = new int[readCount(data, cursor)];
+        check(checkpoints.length > 0);
+        int previous = 0;
+        for (int i = 0; i < checkpoints.length; i++) {
+            int delta = readVarInt(data, cursor);
+            check(delta >= 0 && previous + delta >= previous);
+            previous += delta;
+            checkpoints[i] = previous;
+        }
+
+        int[] hashes = new int[readCount(data, cursor)];
+        int[][] positions = new int[hashes.length][];
+        for (int h = 0; h < hashes.length; h++) {
+            hashes[h] = readVarInt(data, cursor);
+            check(h == 0 || hashes[h] > hashes[h - 1]);
+            positions[h] = new int[readCount(data, cursor)];
+            previous = 0;
+            for (int i = 0; i < positions[h].length; i++) {
+                int delta = readVarInt(data, cursor);
+                check(delta >= 0 && previous + delta < wordCount);
+                previous += delta;
+                positions[h][i] = previous;
+            }
+        }
+
+        return new SnippetIndex(wordCount, checkpoints, hashes, positions);
+    }
+
+    private static void check(boolean valid) {
+        if (!valid) {
+            throw new IllegalArgumentException("Malformed snippet index");
+        }
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f';
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    // a count of entries, each of which takes at least a byte of what is left
+    private static int readCount(byte[] data, int[] cursor) {
+        int count = readVarInt(data, cursor);
+        check(count >= 0 && count <= data.length - cursor[0]);
+        return count;
+    }
+
+    private static int readVarInt(byte[] data, int[] cursor) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            check(cursor[0] < data.length && shift < 32);
+            b = data[cursor[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
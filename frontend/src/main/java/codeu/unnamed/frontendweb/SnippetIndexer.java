@@ -0,0 +1,97 @@
+package codeu.unnamed.frontendweb;
+
+import codeu.unnamed.frontend.JedisIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Background stage that builds a {@link SnippetIndex} for every crawled
+ * document and stores it in Redis next to the search index.
+ *
+ * Documents are never rewritten once crawled, so the indexer only has to
+ * walk ids above the last one it finished. Enabled by snippet.index.enabled.
+ */
+@Component
+public class SnippetIndexer implements ApplicationListener<ApplicationReadyEvent>, Runnable {
+    private static final Logger log = LoggerFactory.getLogger(SnippetIndexer.class);
+
+    private static final int BATCH_SIZE = 100;
+
+    // same budgets as the summary scan at query time
+    private static final int MAX_TEXT_BYTES = 256 * 1024;
+
+    private static final int MAX_WORDS = 32 * 1024;
+
+    private static final long IDLE_MILLIS = 60 * 1000;
+
+    @Autowired
+    private DocumentDao documentDao;
+
+    @Autowired
+    private JedisIndex jedisIndex;
+
+    @Value("${snippet.index.enabled:false}")
+    private boolean enabled;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!this.enabled) {
+            return;
+        }
+
+        Thread thread = new Thread(this, "snippet-indexer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (indexBatch() == 0) {
+                    Thread.sleep(IDLE_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Snippet indexing failed, retrying later", e);
+                try {
+                    Thread.sleep(IDLE_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Indexes the next batch of documents.
+     *
+     * @return number of documents indexed
+     */
+    public int indexBatch() {
+        long[] ids = this.documentDao.findIdsAfter(this.jedisIndex.getLastSnippetIndexed(), BATCH_SIZE);
+
+        if (ids.length == 0) {
+            return 0;
+        }
+
+        Map<Long, byte[]> indexes = new LinkedHashMap<>();
+        for (long id : ids) {
+            byte[] text = this.documentDao.readBytes(id, 0, MAX_TEXT_BYTES);
+            indexes.put(id, SnippetIndex.build(text, MAX_WORDS).encode());
+        }
+
+        this.jedisIndex.putSnippetIndexes(indexes, ids[ids.length - 1]);
+
+        return ids.length;
+    }
+}
@@ -0,0 +1,62 @@
+package codeu.unnamed.frontendweb;
+
+import codeu.unnamed.frontend.PostingCache;
+import codeu.unnamed.frontend.QueryMetrics;
+import codeu.unnamed.frontend.QueryResultCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import redis.clients.jedis.JedisPool;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exposes runtime statistics of the search frontend.
+ */
+@RestController
+public class StatsController {
+    @Autowired
+    private JedisPool jedisPool;
+
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    @Autowired
+    private PostingCache postingCache;
+
+    @Autowired
+    private QueryMetrics queryMetrics;
+
+    @RequestMapping("/stats/redis")
+    public Map<String, Object> redis() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+
+        stats.put("active", this.jedisPool.getNumActive());
+        stats.put("idle", this.jedisPool.getNumIdle());
+        stats.put("waiters", this.jedisPool.getNumWaiters());
+        stats.put("meanWaitMillis", this.jedisPool.getMeanBorrowWaitTimeMillis());
+        stats.put("maxWaitMillis", this.jedisPool.getMaxBorrowWaitTimeMillis());
+
+        return stats;
+    }
+
+    @RequestMapping("/stats/cache")
+    public Map<String, Object> cache() {
+        return this.queryResultCache.getStats();
+    }
+
+    @RequestMapping("/stats/postings")
+    public Map<String, Object> postings() {
+        return this.postingCache.getStats();
+    }
+
+    /**
+     * Latency percentiles of every stage of /query and /complete, in
+     * microseconds, and the calls and bytes loaded per request.
+     */
+    @RequestMapping("/stats/latency")
+    public Map<String, Object> latency() {
+        return this.queryMetrics.getStats();
+    }
+}
@@ -0,0 +1,910 @@
+package ds.tree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, array-packed radix tree for read-mostly string sets such as
+ * completion vocabularies. The value of every key is the key itself.
+ *
+ * Nodes are numbered in breadth-first order, so the children of a node are
+ * contiguous and sorted by their first character, and a child is found with
+ * a binary search. Edge labels live in one shared char buffer. Lookups don't
+ * allocate anything besides their results, and since nothing changes after
+ * construction one instance can be shared by any number of threads.
+ *
+ * Keys may carry a score. Every node also stores the best score in its
+ * subtree, which lets {@link #searchTop(String, int)} return the highest
+ * scored completions while only expanding the nodes that can still beat
+ * them.
+ *
+ * The arrays are held as buffers, so a tree saved with {@link #writeTo(Path)}
+ * can be searched straight from a file mapping, see {@link #map(Path)}.
+ *
+ * @see RadixTreeImpl
+ */
+public class PackedRadixTree implements RadixTree<String> {
+
+    // "PRTI", the first bytes of a file written by writeTo
+    private static final int MAGIC = 0x50525449;
+
+    private static final int VERSION = 1;
+
+    // magic, version, node count, label length, size
+    private static final int HEADER_BYTES = 24;
+
+    // edge labels of all nodes, back to back
+    private final CharBuffer labels;
+
+    // label of node n is labels[labelStart[n] .. labelStart[n + 1])
+    private final IntBuffer labelStart;
+
+    // children of node n are firstChild[n] .. firstChild[n + 1] - 1
+    private final IntBuffer firstChild;
+
+    private final IntBuffer parent;
+
+    // 1 for nodes that end a key
+    private final ByteBuffer real;
+
+    // score of the key ending at each real node
+    private final FloatBuffer score;
+
+    // best score of any key in the subtree of each node
+    private final FloatBuffer maxScore;
+
+    private final long size;
+
+    private PackedRadixTree(char[] labels, int[] labelStart, int[] firstChild, int[] parent, boolean[] real, float[] score, long size) {
+        float[] maxScore = new float[parent.length];
+        byte[] realBytes = new byte[parent.length];
+
+        Arrays.fill(maxScore, Float.NEGATIVE_INFINITY);
+
+        // children are numbered after their parent, so one backward pass suffices
+        for (int n = parent.length - 1; n >= 0; n--) {
+            if (real[n]) {
+                realBytes[n] = 1;
+                maxScore[n] = Math.max(maxScore[n], score[n]);
+            }
+            if (n > 0) {
+                maxScore[parent[n]] = Math.max(maxScore[parent[n]], maxScore[n]);
+            }
+        }
+
+        this.labels = CharBuffer.wrap(labels);
+        this.labelStart = IntBuffer.wrap(labelStart);
+        this.firstChild = IntBuffer.wrap(firstChild);
+        this.parent = IntBuffer.wrap(parent);
+        this.real = ByteBuffer.wrap(realBytes);
+        this.score = FloatBuffer.wrap(score);
+        this.maxScore = FloatBuffer.wrap(maxScore);
+        this.size = size;
+    }
+
+    private PackedRadixTree(CharBuffer labels, IntBuffer labelStart, IntBuffer firstChild, IntBuffer parent, ByteBuffer real, FloatBuffer score, FloatBuffer maxScore, long size) {
+        this.labels = labels;
+        this.labelStart = labelStart;
+        this.firstChild = firstChild;
+        this.parent = parent;
+        this.real = real;
+        this.score = score;
+        this.maxScore = maxScore;
+        this.size = size;
+    }
+
+    /**
+     * Opens a tree saved by {@link #writeTo(Path)}. The file is mapped read
+     * only and searched in place, so loading takes no time whatever its size,
+     * the tree doesn't occupy the heap, and processes opening the same file
+     * share its pages.
+     *
+     * @param file The saved tree
+     * @return The tree, backed by the file
+     * @throws IOException If the file can't be read or isn't a saved tree
+     */
+    public static PackedRadixTree map(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a saved radix tree");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(file + " has unsupported version " + buffer.getInt(4));
+        }
+
+        int count = buffer.getInt(8);
+        int labelLength = buffer.getInt(12);
+        long size = buffer.getLong(16);
+
+        long expected = HEADER_BYTES + 4L * (count + 1) * 2 + 4L * count * 3 + 2L * labelLength + count;
+        if (count <= 0 || labelLength < 0 || buffer.remaining() != expected) {
+            throw new IOException(file + " is truncated or corrupt");
+        }
+
+        int offset = HEADER_BYTES;
+        IntBuffer labelStart = slice(buffer, offset, 4 * (count + 1)).asIntBuffer();
+        offset += 4 * (count + 1);
+        IntBuffer firstChild = slice(buffer, offset, 4 * (count + 1)).asIntBuffer();
+        offset += 4 * (count + 1);
+        IntBuffer parent = slice(buffer, offset, 4 * count).asIntBuffer();
+        offset += 4 * count;
+        FloatBuffer score = slice(buffer, offset, 4 * count).asFloatBuffer();
+        offset += 4 * count;
+        FloatBuffer maxScore = slice(buffer, offset, 4 * count).asFloatBuffer();
+        offset += 4 * count;
+        CharBuffer labels = slice(buffer, offset, 2 * labelLength).asCharBuffer();
+        offset += 2 * labelLength;
+        ByteBuffer real = slice(buffer, offset, count);
+
+        return new PackedRadixTree(labels, labelStart, firstChild, parent, real, score, maxScore, size);
+    }
+
+    /**
+     * Saves the tree in the format read by {@link #map(Path)}. The file is
+     * written next to its destination and renamed over it, so processes
+     * that have the old file mapped keep reading it undisturbed.
+     *
+     * @param file Where to save the tree
+     * @throws IOException If the file can't be written
+     */
+    public void writeTo(Path file) throws IOException {
+        int count = parent.limit();
+        int labelLength = labels.limit();
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 4 * (count + 1) * 2 + 4 * count * 3 + 2 * labelLength + count);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(labelLength).putLong(size);
+        for (int n = 0; n <= count; n++) {
+            buffer.putInt(labelStart.get(n));
+        }
+        for (int n = 0; n <= count; n++) {
+            buffer.putInt(firstChild.get(n));
+        }
+        for (int n = 0; n < count; n++) {
+            buffer.putInt(parent.get(n));
+        }
+        for (int n = 0; n < count; n++) {
+            buffer.putFloat(score.get(n));
+        }
+        for (int n = 0; n < count; n++) {
+            buffer.putFloat(maxScore.get(n));
+        }
+        for (int i = 0; i < labelLength; i++) {
+            buffer.putChar(labels.get(i));
+        }
+        for (int n = 0; n < count; n++) {
+            buffer.put(real.get(n));
+        }
+        buffer.flip();
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // a little-endian view of length bytes of the buffer starting at offset
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset).limit(offset + length);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Builds a tree from distinct keys in ascending {@link String#compareTo}
+     * order, in time linear in their total length.
+     *
+     * @param keys The sorted keys
+     * @return The packed tree
+     * @throws DuplicateKeyException If a key appears twice
+     * @throws IllegalArgumentException If the keys are not sorted
+     */
+    public static PackedRadixTree fromSorted(List<String> keys) throws DuplicateKeyException {
+        return fromSorted(keys, new float[keys.size()]);
+    }
+
+    /**
+     * Builds a tree of scored keys. See {@link #fromSorted(List)}.
+     *
+     * @param keys The sorted keys
+     * @param scores The score of every key, in the same order
+     * @return The packed tree
+     */
+    public static PackedRadixTree fromSorted(List<String> keys, float[] scores) throws DuplicateKeyException {
+        for (int i = 1; i < keys.size(); i++) {
+            int order = keys.get(i - 1).compareTo(keys.get(i));
+            if (order == 0) {
+                throw new DuplicateKeyException("Duplicate key: '" + keys.get(i) + "'");
+            } else if (order > 0) {
+                throw new IllegalArgumentException("Keys are not sorted at '" + keys.get(i) + "'");
+            }
+        }
+
+        int capacity = 16;
+        // every queued node covers the keys [lo, hi) sharing their first depth chars
+        int[] lo = new int[capacity];
+        int[] hi = new int[capacity];
+        int[] depth = new int[capacity];
+        int[] parent = new int[capacity];
+        int[] labelStart = new int[capacity];
+        int[] firstChild = new int[capacity];
+        boolean[] real = new boolean[capacity];
+        float[] score = new float[capacity];
+        char[] labels = new char[64];
+        int labelLength = 0;
+
+        int tail = 1;
+        lo[0] = 0;
+        hi[0] = keys.size();
+        depth[0] = 0;
+        parent[0] = -1;
+
+        for (int n = 0; n < tail; n++) {
+            String first = keys.isEmpty() ? "" : keys.get(lo[n]);
+
+            // the root has no label, any other node takes the longest common prefix
+            int end = depth[n];
+            if (n > 0) {
+                String last = keys.get(hi[n] - 1);
+                int limit = Math.min(first.length(), last.length());
+                while (end < limit && first.charAt(end) == last.charAt(end)) {
+                    end++;
+                }
+            }
+
+            if (labelLength + end - depth[n] > labels.length) {
+                labels = Arrays.copyOf(labels, Math.max(labels.length * 2, labelLength + end - depth[n]));
+            }
+            first.getChars(depth[n], end, labels, labelLength);
+            labelStart[n] = labelLength;
+            labelLength += end - depth[n];
+
+            real[n] = hi[n] > lo[n] && first.length() == end;
+            if (real[n]) {
+                score[n] = scores[lo[n]];
+            }
+            firstChild[n] = tail;
+
+            int i = real[n] ? lo[n] + 1 : lo[n];
+            while (i < hi[n]) {
+                char c = keys.get(i).charAt(end);
+                int j = i + 1;
+                while (j < hi[n] && keys.get(j).charAt(end) == c) {
+                    j++;
+                }
+
+                if (tail == lo.length) {
+                    capacity = lo.length * 2;
+                    lo = Arrays.copyOf(lo, capacity);
+                    hi = Arrays.copyOf(hi, capacity);
+                    depth = Arrays.copyOf(depth, capacity);
+                    parent = Arrays.copyOf(parent, capacity);
+                    labelStart = Arrays.copyOf(labelStart, capacity);
+                    firstChild = Arrays.copyOf(firstChild, capacity);
+                    real = Arrays.copyOf(real, capacity);
+                    score = Arrays.copyOf(score, capacity);
+                }
+
+                lo[tail] = i;
+                hi[tail] = j;
+                depth[tail] = end;
+                parent[tail] = n;
+                tail++;
+
+                i = j;
+            }
+        }
+
+        labelStart = Arrays.copyOf(labelStart, tail + 1);
+        labelStart[tail] = labelLength;
+        firstChild = Arrays.copyOf(firstChild, tail + 1);
+        firstChild[tail] = tail;
+
+        return new PackedRadixTree(Arrays.copyOf(labels, labelLength), labelStart, firstChild,
+                Arrays.copyOf(parent, tail), Arrays.copyOf(real, tail), Arrays.copyOf(score, tail), keys.size());
+    }
+
+    /**
+     * Builds a tree from keys in any order, ignoring duplicates.
+     *
+     * @param keys The keys
+     * @return The packed tree
+     */
+    public static PackedRadixTree of(Collection<String> keys) {
+        String[] sorted = keys.toArray(new String[keys.size()]);
+        Arrays.sort(sorted);
+
+        List<String> distinct = new ArrayList<String>(sorted.length);
+        for (String key : sorted) {
+            if (distinct.isEmpty() || !distinct.get(distinct.size() - 1).equals(key)) {
+                distinct.add(key);
+            }
+        }
+
+        return fromSorted(distinct);
+    }
+
+    /**
+     * Builds a tree from scored keys in any order.
+     *
+     * @param keys Map from key to its score
+     * @return The packed tree
+     */
+    public static PackedRadixTree of(Map<String, Float> keys) {
+        List<String> sorted = new ArrayList<String>(keys.keySet());
+        Collections.sort(sorted);
+
+        float[] scores = new float[sorted.size()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = keys.get(sorted.get(i));
+        }
+
+        return fromSorted(sorted, scores);
+    }
+
+    /**
+     * Returns a tree holding the keys of this one together with the given
+     * keys, whose scores replace those of keys already present. This tree is
+     * left as it is, so readers can go on using it while the copy is built.
+     *
+     * @param added Map from key to its score
+     * @return The merged tree
+     */
+    public PackedRadixTree withKeys(Map<String, Float> added) {
+        List<String> sortedAdded = new ArrayList<String>(added.keySet());
+        Collections.sort(sortedAdded);
+
+        List<String> keys = new ArrayList<String>((int) size + sortedAdded.size());
+        float[] scores = new float[(int) size + sortedAdded.size()];
+        int next = 0;
+
+        // children are sorted by first char, so a preorder walk lists the keys in order
+        int[] stack = new int[16];
+        int top = 0;
+        stack = push(stack, top++, 0);
+
+        while (top > 0) {
+            int node = stack[--top];
+
+            for (int child = firstChild.get(node + 1) - 1; child >= firstChild.get(node); child--) {
+                stack = push(stack, top++, child);
+            }
+
+            if (!isReal(node)) {
+                continue;
+            }
+
+            String key = keyOf(node);
+            while (next < sortedAdded.size() && sortedAdded.get(next).compareTo(key) < 0) {
+                scores[keys.size()] = added.get(sortedAdded.get(next));
+                keys.add(sortedAdded.get(next++));
+            }
+
+            if (next < sortedAdded.size() && sortedAdded.get(next).equals(key)) {
+                scores[keys.size()] = added.get(sortedAdded.get(next++));
+            } else {
+                scores[keys.size()] = score.get(node);
+            }
+            keys.add(key);
+        }
+
+        while (next < sortedAdded.size()) {
+            scores[keys.size()] = added.get(sortedAdded.get(next));
+            keys.add(sortedAdded.get(next++));
+        }
+
+        return fromSorted(keys, Arrays.copyOf(scores, keys.size()));
+    }
+
+    /**
+     * Not supported, the tree is immutable.
+     */
+    public void insert(String key, String value) throws DuplicateKeyException {
+        throw new UnsupportedOperationException("PackedRadixTree is immutable");
+    }
+
+    /**
+     * Not supported, the tree is immutable.
+     */
+    public boolean delete(String key) {
+        throw new UnsupportedOperationException("PackedRadixTree is immutable");
+    }
+
+    public String find(String key) {
+        return contains(key) ? key : null;
+    }
+
+    public boolean contains(String key) {
+        int node = locate(key);
+        return node >= 0 && isReal(node) && endsAtLabelEnd(node, key);
+    }
+
+    public ArrayList<String> searchPrefix(String prefix, int recordLimit) {
+        ArrayList<String> keys = new ArrayList<String>();
+        int node = locate(prefix);
+
+        if (node < 0 || recordLimit <= 0) {
+            return keys;
+        }
+
+        if (isReal(node)) {
+            keys.add(keyOf(node));
+        }
+
+        // breadth-first over the subtree, like RadixTreeImpl
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+
+        for (int child = firstChild.get(node); child < firstChild.get(node + 1); child++) {
+            queue = push(queue, tail++, child);
+        }
+
+        while (head < tail && keys.size() < recordLimit) {
+            int next = queue[head++];
+
+            if (isReal(next)) {
+                keys.add(keyOf(next));
+            }
+
+            for (int child = firstChild.get(next); child < firstChild.get(next + 1); child++) {
+                queue = push(queue, tail++, child);
+            }
+        }
+
+        return keys;
+    }
+
+    /**
+     * Returns the highest scored keys starting with the given prefix, best
+     * first. Equal scores come out in breadth-first order.
+     *
+     * Runs a best-first search keyed by the best score of each subtree, so
+     * subtrees that can't make it into the results are never expanded.
+     *
+     * @param prefix The prefix for which keys need to be search
+     * @param recordLimit The limit for the results
+     * @return The keys, best first
+     */
+    public ArrayList<String> searchTop(String prefix, int recordLimit) {
+        ArrayList<String> keys = new ArrayList<String>();
+        int node = locate(prefix);
+
+        if (node < 0 || recordLimit <= 0) {
+            return keys;
+        }
+
+        // a node is queued once to be expanded (even item) and once as a result (odd item)
+        NodeQueue queue = new NodeQueue();
+        queue.push(maxScore.get(node), node << 1);
+        collectTop(queue, recordLimit, keys, null);
+
+        return keys;
+    }
+
+    /**
+     * Returns the highest scored keys that start with a string within
+     * maxEdits insertions, deletions, substitutions or swaps of adjacent
+     * characters of the prefix. Keys
+     * needing fewer edits come first, then keys by descending score.
+     *
+     * Edges are walked depth first carrying one row of the edit distance matrix
+     * per character, and a branch is dropped as soon as no cell of its row is
+     * within maxEdits. At most nodeBudget nodes are visited; past that the
+     * results only cover the part of the tree that was reached.
+     *
+     * @param prefix The possibly mistyped prefix
+     * @param maxEdits The largest edit distance allowed
+     * @param recordLimit The maximum number of keys to return
+     * @param nodeBudget The maximum number of nodes to visit
+     * @return The matching keys
+     */
+    public ArrayList<String> searchFuzzy(String prefix, int maxEdits, int recordLimit, int nodeBudget) {
+        ArrayList<String> keys = new ArrayList<String>();
+
+        if (recordLimit <= 0) {
+            return keys;
+        }
+
+        FuzzyMatch match = new FuzzyMatch(prefix, maxEdits, nodeBudget);
+        match.visit(0, 0, Integer.MAX_VALUE);
+
+        // a subtree matched with fewer edits may sit below one matched with more
+        Set<Integer> found = new HashSet<Integer>();
+        for (int edits = 0; edits <= maxEdits && keys.size() < recordLimit; edits++) {
+            NodeQueue queue = new NodeQueue();
+            for (int i = 0; i < match.count; i++) {
+                if (match.edits[i] == edits) {
+                    queue.push(maxScore.get(match.nodes[i]), match.nodes[i] << 1);
+                }
+            }
+            collectTop(queue, recordLimit, keys, found);
+        }
+
+        return keys;
+    }
+
+    // pops results off the queue best first until it runs out or keys is full
+    private void collectTop(NodeQueue queue, int recordLimit, ArrayList<String> keys, Set<Integer> found) {
+        while (!queue.isEmpty() && keys.size() < recordLimit) {
+            int item = queue.pop();
+            int next = item >>> 1;
+
+            if ((item & 1) == 1) {
+                if (found == null || found.add(next)) {
+                    keys.add(keyOf(next));
+                }
+                continue;
+            }
+
+            if (isReal(next)) {
+                queue.push(score.get(next), (next << 1) | 1);
+            }
+
+            for (int child = firstChild.get(next); child < firstChild.get(next + 1); child++) {
+                queue.push(maxScore.get(child), child << 1);
+            }
+        }
+    }
+
+    /**
+     * Lists every distinct prefix, up to the given length, of the keys in the
+     * tree.
+     *
+     * @param maxLength The longest prefix to list
+     * @return The prefixes, shorter ones first along each path
+     */
+    public List<String> prefixes(int maxLength) {
+        List<String> prefixes = new ArrayList<String>();
+        int[] stack = new int[16];
+        int top = 0;
+
+        for (int child = firstChild.get(0); child < firstChild.get(1); child++) {
+            stack = push(stack, top++, child);
+        }
+
+        while (top > 0) {
+            int node = stack[--top];
+            String path = keyOf(node);
+            int start = path.length() - (labelStart.get(node + 1) - labelStart.get(node));
+
+            for (int length = start + 1; length <= path.length() && length <= maxLength; length++) {
+                prefixes.add(path.substring(0, length));
+            }
+
+            if (path.length() < maxLength) {
+                for (int child = firstChild.get(node); child < firstChild.get(node + 1); child++) {
+                    stack = push(stack, top++, child);
+                }
+            }
+        }
+
+        return prefixes;
+    }
+
+    /**
+     * Returns the score of a key, or NaN if the tree doesn't contain it.
+     */
+    public float getScore(String key) {
+        int node = locate(key);
+        return node >= 0 && isReal(node) && endsAtLabelEnd(node, key) ? score.get(node) : Float.NaN;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String complete(String prefix) {
+        int node = locate(prefix);
+        return node < 0 ? "" : keyOf(node);
+    }
+
+    /**
+     * Returns the number of nodes in the tree, including the root.
+     */
+    public int getNodeCount() {
+        return parent.limit();
+    }
+
+    /**
+     * Finds the node whose path first covers the whole key.
+     *
+     * @return The node, or -1 if no key starts with the given one
+     */
+    private int locate(String key) {
+        int node = 0;
+        int i = 0;
+        int length = key.length();
+
+        while (i < length) {
+            int child = findChild(node, key.charAt(i));
+            if (child < 0) {
+                return -1;
+            }
+
+            int j = labelStart.get(child);
+            int end = labelStart.get(child + 1);
+            while (j < end && i < length) {
+                if (labels.get(j) != key.charAt(i)) {
+                    return -1;
+                }
+                j++;
+                i++;
+            }
+
+            node = child;
+        }
+
+        return node;
+    }
+
+    private boolean isReal(int node) {
+        return real.get(node) != 0;
+    }
+
+    // whether the path of node is exactly as long as the key
+    private boolean endsAtLabelEnd(int node, String key) {
+        int length = 0;
+        for (int n = node; n >= 0; n = parent.get(n)) {
+            length += labelStart.get(n + 1) - labelStart.get(n);
+        }
+        return length == key.length();
+    }
+
+    private int findChild(int node, char c) {
+        int low = firstChild.get(node);
+        int high = firstChild.get(node + 1) - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char first = labels.get(labelStart.get(mid));
+
+            if (first < c) {
+                low = mid + 1;
+            } else if (first > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -1;
+    }
+
+    private String keyOf(int node) {
+        int length = 0;
+        for (int n = node; n >= 0; n = parent.get(n)) {
+            length += labelStart.get(n + 1) - labelStart.get(n);
+        }
+
+        char[] key = new char[length];
+        for (int n = node; n >= 0; n = parent.get(n)) {
+            int labelLength = labelStart.get(n + 1) - labelStart.get(n);
+            length -= labelLength;
+            for (int i = 0; i < labelLength; i++) {
+                key[length + i] = labels.get(labelStart.get(n) + i);
+            }
+        }
+
+        return new String(key);
+    }
+
+    /**
+     * Binary max-heap of queued items for {@link #searchTop(String, int)}.
+     * Ties go to results first, then to lower node numbers.
+     */
+    private static final class NodeQueue {
+        private float[] keys = new float[16];
+
+        private int[] items = new int[16];
+
+        private int size = 0;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(float key, int item) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                items = Arrays.copyOf(items, size * 2);
+            }
+
+            int i = size++;
+            while (i > 0) {
+                int up = (i - 1) >>> 1;
+                if (!before(key, item, keys[up], items[up])) {
+                    break;
+                }
+                keys[i] = keys[up];
+                items[i] = items[up];
+                i = up;
+            }
+            keys[i] = key;
+            items[i] = item;
+        }
+
+        int pop() {
+            int top = items[0];
+            float key = keys[--size];
+            int item = items[size];
+
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && before(keys[child + 1], items[child + 1], keys[child], items[child])) {
+                    child++;
+                }
+                if (!before(keys[child], items[child], key, item)) {
+                    break;
+                }
+                keys[i] = keys[child];
+                items[i] = items[child];
+                i = child;
+            }
+            keys[i] = key;
+            items[i] = item;
+
+            return top;
+        }
+
+        private static boolean before(float k1, int i1, float k2, int i2) {
+            if (k1 != k2) {
+                return k1 > k2;
+            }
+            if ((i1 & 1) != (i2 & 1)) {
+                return (i1 & 1) == 1;
+            }
+            return i1 < i2;
+        }
+    }
+
+    /**
+     * State of one {@link #searchFuzzy(String, int, int, int)} walk: the
+     * edit distance rows along the current path and the subtrees matched so far
+     * with the edits they needed.
+     */
+    private final class FuzzyMatch {
+        private final String prefix;
+
+        private final int maxEdits;
+
+        private int budget;
+
+        // rows[d] holds the distances from each prefix of the prefix to the first d path chars
+        private int[][] rows;
+
+        private char[] path;
+
+        int[] nodes = new int[16];
+
+        int[] edits = new int[16];
+
+        int count = 0;
+
+        FuzzyMatch(String prefix, int maxEdits, int budget) {
+            this.prefix = prefix;
+            this.maxEdits = maxEdits;
+            this.budget = budget;
+            this.rows = new int[16][];
+            this.path = new char[16];
+            this.rows[0] = new int[prefix.length() + 1];
+            for (int j = 0; j <= prefix.length(); j++) {
+                this.rows[0][j] = j;
+            }
+        }
+
+        /**
+         * Visits the children of a node whose path is depth chars long. Only
+         * matches needing fewer edits than the closest matched ancestor are
+         * recorded, since the ancestor's subtree already holds the rest.
+         */
+        void visit(int node, int depth, int matched) {
+            int length = prefix.length();
+
+            for (int child = firstChild.get(node); child < firstChild.get(node + 1) && budget > 0; child++) {
+                budget--;
+
+                int d = depth;
+                int best = Integer.MAX_VALUE;
+                boolean alive = true;
+
+                for (int j = labelStart.get(child); j < labelStart.get(child + 1); j++) {
+                    int min = step(d++, labels.get(j));
+                    best = Math.min(best, rows[d][length]);
+                    if (min > maxEdits) {
+                        alive = false;
+                        break;
+                    }
+                }
+
+                if (best <= maxEdits && best < matched) {
+                    add(child, best);
+                }
+
+                int closest = Math.min(matched, best);
+                if (alive && closest > 0) {
+                    visit(child, d, closest);
+                }
+            }
+        }
+
+        // fills rows[depth + 1] from rows[depth] and returns its smallest cell
+        private int step(int depth, char c) {
+            if (depth + 1 == rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+                path = Arrays.copyOf(path, path.length * 2);
+            }
+            if (rows[depth + 1] == null) {
+                rows[depth + 1] = new int[prefix.length() + 1];
+            }
+
+            int[] previous = rows[depth];
+            int[] current = rows[depth + 1];
+            path[depth] = c;
+
+            current[0] = previous[0] + 1;
+            int min = current[0];
+
+            for (int j = 1; j < current.length; j++) {
+                int cost = prefix.charAt(j - 1) == c ? 0 : 1;
+                current[j] = Math.min(previous[j - 1] + cost, Math.min(previous[j], current[j - 1]) + 1);
+                if (j > 1 && depth > 0 && prefix.charAt(j - 1) == path[depth - 1] && prefix.charAt(j - 2) == c) {
+                    current[j] = Math.min(current[j], rows[depth - 1][j - 2] + 1);
+                }
+                min = Math.min(min, current[j]);
+            }
+
+            return min;
+        }
+
+        private void add(int node, int distance) {
+            if (count == nodes.length) {
+                nodes = Arrays.copyOf(nodes, count * 2);
+                edits = Arrays.copyOf(edits, count * 2);
+            }
+            nodes[count] = node;
+            edits[count] = distance;
+            count++;
+        }
+    }
+
+    private static int[] push(int[] queue, int index, int value) {
+        if (index == queue.length) {
+            queue = Arrays.copyOf(queue, queue.length * 2);
+        }
+        queue[index] = value;
+        return queue;
+    }
+}
@@ -0,0 +1,89 @@
+package codeu.unnamed.frontend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class DocumentDictionaryTest {
+
+	// enough documents to grow the table and the pages several times
+	private static final int DOCUMENTS = 50000;
+
+	@Test
+	public void ordinalsAreDenseAndMapBack()
+	{
+		DocumentDictionary dictionary = new DocumentDictionary();
+
+		for (int n = 0; n < DOCUMENTS; n++) {
+			// consecutive and scattered ids, both of which the database hands out
+			long id = n % 2 == 0 ? n : Long.MAX_VALUE - 1 - 31L * n;
+			assertEquals(n, dictionary.ordinal(id));
+		}
+
+		assertEquals(DOCUMENTS, dictionary.size());
+		for (int n = 0; n < DOCUMENTS; n++) {
+			long id = dictionary.id(n);
+			assertEquals(n, dictionary.ordinal(id));
+		}
+		assertEquals(DOCUMENTS, dictionary.size());
+
+		long[] ids = {0, 2, Long.MAX_VALUE - 32};
+		assertArrayEquals(ids, dictionary.ids(dictionary.ordinals(ids)));
+	}
+	@Test
+	public void threadsAgreeOnOrdinals() throws Exception
+	{
+		DocumentDictionary dictionary = new DocumentDictionary();
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+
+		try {
+			// every thread looks up the same ids, each in its own order
+			List<Future<int[]>> results = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				List<Integer> order = new ArrayList<>();
+				for (int n = 0; n < DOCUMENTS; n++) {
+					order.add(n);
+				}
+				Collections.shuffle(order, new Random(t));
+
+				results.add(executor.submit(() -> {
+					start.await();
+					int[] ordinals = new int[DOCUMENTS];
+					for (int n : order) {
+						ordinals[n] = dictionary.ordinal(1000 + 3L * n);
+					}
+					return ordinals;
+				}));
+			}
+			start.countDown();
+
+			int[] first = results.get(0).get();
+			for (Future<int[]> result : results) {
+				assertArrayEquals(first, result.get());
+			}
+
+			assertEquals(DOCUMENTS, dictionary.size());
+			int[] sorted = first.clone();
+			Arrays.sort(sorted);
+			for (int n = 0; n < DOCUMENTS; n++) {
+				assertEquals(n, sorted[n]);
+				assertEquals(1000 + 3L * n, dictionary.id(first[n]));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
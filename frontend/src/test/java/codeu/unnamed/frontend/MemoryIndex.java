@@ -0,0 +1,197 @@
+package codeu.unnamed.frontend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory {@link JedisIndex} over a random corpus, serving the reads a
+ * search makes, so rankings can be checked against scoring every document.
+ *
+ * Documents get ids far from their ordinals, so a result that skips the
+ * dictionary shows up as a wrong id.
+ */
+class MemoryIndex extends JedisIndex {
+
+	// postings of every term ranked by frequency, then by ordinal, as the index stores them
+	private Map<String, PostingList> postings = new HashMap<>();
+	private Map<String, TermBound> bounds = new HashMap<>();
+	// number of terms indexed on each document, by ordinal
+	private int[] lengths;
+	private long totalWords;
+	// terms whose postings can't be read
+	private Set<String> failing = new HashSet<>();
+	private Map<String, AtomicInteger> reads = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param vocabulary terms, the first in 60% of the documents and the
+	 *        n-th in 60 / n %
+	 * @param documents number of documents
+	 * @param seed seed of the corpus
+	 */
+	MemoryIndex(String[] vocabulary, int documents, long seed)
+	{
+		super(null);
+		Random random = new Random(seed);
+		List<int[]> frequencies = new ArrayList<>();
+		for (String term : vocabulary) {
+			frequencies.add(new int[documents]);
+		}
+
+		lengths = new int[documents];
+		for (int document = 0; document < documents; document++) {
+			getDocumentDictionary().ordinal(1000 + 7L * document);
+
+			// words outside the vocabulary only count towards the length
+			lengths[document] = 20 + random.nextInt(300);
+			for (int t = 0; t < vocabulary.length; t++) {
+				if (random.nextDouble() < 0.6 / (t + 1)) {
+					frequencies.get(t)[document] = 1 + (int) (-3 * Math.log(1 - random.nextDouble()));
+					lengths[document]++;
+				}
+			}
+			totalWords += lengths[document];
+		}
+
+		for (int t = 0; t < vocabulary.length; t++) {
+			int[] counts = frequencies.get(t);
+			int[] ranked = IntStream.range(0, documents).filter((d) -> counts[d] > 0).boxed()
+					.sorted((a, b) -> counts[a] != counts[b] ? Integer.compare(counts[b], counts[a]) : Integer.compare(a, b))
+					.mapToInt(Integer::intValue).toArray();
+
+			postings.put(vocabulary[t], new PostingList(ranked, Arrays.stream(ranked).map((d) -> counts[d]).toArray()));
+			bounds.put(vocabulary[t], TermBound.build(Arrays.stream(ranked).map((d) -> lengths[d]).toArray(), getGeneration()));
+		}
+	}
+	/**
+	 * Makes reads of a term's postings fail.
+	 */
+	void fail(String term)
+	{
+		failing.add(term);
+	}
+	/**
+	 * Returns the number of times a term's postings were read.
+	 */
+	int reads(String term)
+	{
+		AtomicInteger count = reads.get(term);
+		return count == null ? 0 : count.get();
+	}
+	/**
+	 * Returns the score of every document containing a query term, by ordinal,
+	 * with NaN for the others.
+	 */
+	double[] score(UserQuery query)
+	{
+		Map<String, PostingList> all = new LinkedHashMap<>();
+		for (Map.Entry<String, Integer> entry : query.getQueries()) {
+			all.put(entry.getKey(), postings(entry.getKey()));
+		}
+		IndexStatistics stats = getStatistics(all);
+
+		double[] scores = new double[lengths.length];
+		Arrays.fill(scores, Double.NaN);
+		for (Map.Entry<String, Integer> entry : query.getQueries()) {
+			RankingFunction.TermScorer scorer = query.getRanking().prepare(stats, entry.getKey(), entry.getValue());
+			PostingList list = all.get(entry.getKey());
+			for (int i = 0; i < list.size(); i++) {
+				int document = list.getDocument(i);
+				double score = scorer.score(list.getFrequency(i), lengths[document]);
+				scores[document] = Double.isNaN(scores[document]) ? score : scores[document] + score;
+			}
+		}
+		return scores;
+	}
+	private PostingList postings(String term)
+	{
+		PostingList list = postings.get(term);
+		return list == null ? PostingList.EMPTY : list;
+	}
+	@Override
+	public int getTotalDocuments()
+	{
+		return lengths.length;
+	}
+	@Override
+	public long getGeneration()
+	{
+		return lengths.length;
+	}
+	@Override
+	public PostingList getPostings(String term, int start, int end)
+	{
+		reads.computeIfAbsent(term, (key) -> new AtomicInteger()).incrementAndGet();
+		if (failing.contains(term)) {
+			throw new IllegalStateException("Can't read " + term);
+		}
+
+		return postings(term).slice(start, end + 1);
+	}
+	@Override
+	public Map<String, PostingList> getPostings(Collection<String> terms, int[] ordinals)
+	{
+		Map<String, PostingList> found = new LinkedHashMap<>();
+
+		for (String term : terms) {
+			PostingList list = postings(term);
+			Map<Integer, Integer> frequencies = new HashMap<>();
+			for (int i = 0; i < list.size(); i++) {
+				frequencies.put(list.getDocument(i), list.getFrequency(i));
+			}
+
+			int[] documents = Arrays.stream(ordinals).filter(frequencies::containsKey).toArray();
+			found.put(term, new PostingList(documents, Arrays.stream(documents).map(frequencies::get).toArray()));
+		}
+
+		return found;
+	}
+	@Override
+	public int numberOfDocsContainingTerm(String term)
+	{
+		return postings(term).size();
+	}
+	@Override
+	public Double getAverageDocLength()
+	{
+		return (double) totalWords / lengths.length;
+	}
+	@Override
+	public IndexStatistics getStatistics(Map<String, PostingList> postings)
+	{
+		Map<String, Integer> documentFrequency = new HashMap<>();
+		for (String term : postings.keySet()) {
+			documentFrequency.put(term, numberOfDocsContainingTerm(term));
+		}
+
+		int[] documents = postings.values().stream()
+				.flatMapToInt((list) -> IntStream.range(0, list.size()).map(list::getDocument))
+				.distinct().sorted().toArray();
+
+		return new IndexStatistics(getTotalDocuments(), getAverageDocLength(), documentFrequency,
+				documents, Arrays.stream(documents).map((d) -> lengths[d]).toArray());
+	}
+	@Override
+	public Map<String, TermBound> getTermBounds(Collection<String> terms)
+	{
+		Map<String, TermBound> found = new HashMap<>();
+		for (String term : terms) {
+			if (bounds.containsKey(term)) {
+				found.put(term, bounds.get(term));
+			}
+		}
+		return found;
+	}
+}
@@ -0,0 +1,42 @@
+package codeu.unnamed.frontend;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class RankingFunctionsTest {
+
+	@Test
+	public void findsFunctionsInAnyCase()
+	{
+		RankingFunctions functions = new RankingFunctions("bm25", 1.2, 0.75, 100);
+		functions.checkDefault();
+
+		assertEquals("tfidf", functions.get(" TfIdf ").getName());
+		assertSame(functions.getImpact(), functions.get("impact"));
+	}
+	@Test
+	public void defaultMayBeAnExtension()
+	{
+		RankingFunction custom = new TfIdf() {
+			@Override
+			public String getName()
+			{
+				return "custom";
+			}
+		};
+		RankingFunctions functions = new RankingFunctions("custom", 1.2, 0.75, 100);
+		functions.setExtensions(Collections.singletonList(custom));
+		functions.checkDefault();
+
+		assertSame(custom, functions.getDefault());
+	}
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownDefaultIsRejected()
+	{
+		new RankingFunctions("bm25f", 1.2, 0.75, 100).checkDefault();
+	}
+}
@@ -0,0 +1,67 @@
+package codeu.unnamed.frontend;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TermBoundTest {
+
+	@Test
+	public void decodesWhatItEncodes()
+	{
+		Random random = new Random(3);
+		int[] lengths = new int[3 * TermBound.BLOCK_SIZE + 17];
+		for (int i = 0; i < lengths.length; i++) {
+			lengths[i] = 1 + random.nextInt(500);
+		}
+		TermBound bound = TermBound.build(lengths, 42);
+
+		TermBound decoded = TermBound.decode(bound.encode());
+
+		assertNotNull(decoded);
+		assertEquals(bound.getGeneration(), decoded.getGeneration());
+		for (int rank = 0; rank < lengths.length; rank++) {
+			assertEquals(bound.minDocLength(rank, 42), decoded.minDocLength(rank, 42));
+		}
+	}
+	@Test
+	public void boundsEveryLaterDocument()
+	{
+		Random random = new Random(5);
+		int[] lengths = new int[5 * TermBound.BLOCK_SIZE];
+		for (int i = 0; i < lengths.length; i++) {
+			lengths[i] = 1 + random.nextInt(500);
+		}
+		TermBound bound = TermBound.build(lengths, 42);
+
+		for (int rank = 0; rank < lengths.length; rank++) {
+			int min = Arrays.stream(lengths, rank, lengths.length).min().getAsInt();
+			assertTrue(bound.minDocLength(rank, 42) <= min);
+		}
+		// a document was indexed since the bound was computed
+		assertEquals(0, bound.minDocLength(0, 43));
+	}
+	@Test
+	public void otherDataDecodesToNull()
+	{
+		byte[] data = TermBound.build(new int[] {3, 1, 2}, 42).encode();
+
+		assertNull(TermBound.decode(Arrays.copyOf(data, data.length - 1)));
+		assertNull(TermBound.decode(new byte[4]));
+
+		// a negative number of blocks
+		byte[] negative = data.clone();
+		negative[12] = (byte) 0xFF;
+		assertNull(TermBound.decode(negative));
+
+		// bounds of the first version were keyed on the number of documents
+		data[3] = 1;
+		assertNull(TermBound.decode(data));
+	}
+}
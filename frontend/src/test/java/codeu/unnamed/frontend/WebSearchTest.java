@@ -0,0 +1,93 @@
+package codeu.unnamed.frontend;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WebSearchTest {
+
+	private static final String[] VOCABULARY = {"java", "code", "search", "index", "tree", "rank", "page", "query"};
+	private static final int PAGE = 20;
+
+	private MemoryIndex index;
+	private QueryExecutor executor;
+	private QueryResultCache cache;
+	private WebSearch webSearch;
+
+	@Before
+	public void setUp()
+	{
+		index = new MemoryIndex(VOCABULARY, 3000, 11);
+		executor = new QueryExecutor(4, 256, 5000);
+		cache = new QueryResultCache(index::getGeneration, 16, 60000, Long.MAX_VALUE);
+		webSearch = new WebSearch(index, executor, cache, new PostingCache(index, index::getGeneration, 1 << 20, Long.MAX_VALUE));
+	}
+	@After
+	public void tearDown()
+	{
+		executor.shutdown();
+	}
+	@Test
+	public void pagesMatchEveryDocumentScored()
+	{
+		String[][] queries = {{"java"}, {"code", "search"}, {"search", "tree", "tree"}, {"index", "rank", "page", "query"}};
+
+		for (RankingFunction ranking : new RankingFunction[] {Bm25.DEFAULT, new TfIdf()}) {
+			for (String[] query : queries) {
+				checkPages(query, ranking, 10);
+			}
+		}
+	}
+	@Test
+	public void firstPageReadsOnlyTheTopPostings()
+	{
+		String[] query = {"code", "search"};
+		checkPages(query, Bm25.DEFAULT, 1);
+
+		QueryCursor cursor = cache.get(new UserQuery(query, Bm25.DEFAULT));
+		assertTrue(cursor.isSettled(PAGE));
+		assertTrue(cursor.getDepth("code") < index.numberOfDocsContainingTerm("code"));
+	}
+	@Test
+	public void termThatFailsIsReadOnce()
+	{
+		index.fail("search");
+
+		long[] ids = webSearch.processQueries(new String[] {"code", "search"}, 0, PAGE);
+
+		assertEquals(1, index.reads("search"));
+		assertEquals(PAGE, ids.length);
+		assertFalse(cache.get(new UserQuery(new String[] {"code", "search"})).covers(PAGE));
+	}
+	// fetches the first pages and checks each holds the next best scores
+	private void checkPages(String[] query, RankingFunction ranking, int pages)
+	{
+		double[] scores = index.score(new UserQuery(query, ranking));
+		double[] ranked = Arrays.stream(scores).filter((score) -> !Double.isNaN(score)).toArray();
+		Arrays.sort(ranked);
+
+		Set<Long> seen = new HashSet<>();
+		for (int page = 0; page < pages; page++) {
+			long[] ids = webSearch.processQueries(query, ranking, page * PAGE, PAGE);
+			assertEquals(Math.min(PAGE, Math.max(ranked.length - page * PAGE, 0)), ids.length);
+
+			for (int i = 0; i < ids.length; i++) {
+				int rank = page * PAGE + i;
+				String where = ranking.getName() + " " + Arrays.toString(query) + " rank " + rank;
+
+				assertTrue(where, seen.add(ids[i]));
+				// ties may come in any order, so only scores are compared
+				int document = index.getDocumentDictionary().ordinal(ids[i]);
+				assertEquals(where, ranked[ranked.length - 1 - rank], scores[document], 1e-9);
+			}
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package codeu.unnamed.frontendweb;
+
+import codeu.unnamed.frontend.QueryMetrics;
+import codeu.unnamed.frontend.RankingFunctions;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.validation.Errors;
+import org.springframework.validation.Validator;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class QueryControllerTest {
+
+    @Test
+    public void unknownScoringIsABadRequest() throws Exception {
+        QueryController controller = new QueryController();
+        ReflectionTestUtils.setField(controller, "rankingFunctions", new RankingFunctions("bm25", 1.2, 0.75, 100));
+        ReflectionTestUtils.setField(controller, "queryMetrics", new QueryMetrics(1000));
+        // nothing is validated, so bean validation isn't bootstrapped
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(controller).setValidator(new Validator() {
+            @Override
+            public boolean supports(Class<?> type) {
+                return false;
+            }
+
+            @Override
+            public void validate(Object target, Errors errors) {
+            }
+        }).build();
+
+        mvc.perform(get("/query").param("query", "java").param("scoring", "foo"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,49 @@
+package codeu.unnamed.frontendweb;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResultEntryTest {
+
+    @Test
+    public void stopsReadingAtTheFirstChunkWithAMatch() {
+        StringBuilder text = new StringBuilder();
+        for (int n = 0; text.length() < 100 * 1024; n++) {
+            text.append("filler").append(n).append(' ');
+        }
+        text.append("the libraries of the city");
+        for (int n = 0; text.length() < 400 * 1024; n++) {
+            text.append(" filler").append(n);
+        }
+        byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        DocumentSummary document = new DocumentSummary(1, "", "", Arrays.copyOf(body, 4096), true);
+        List<Integer> reads = new ArrayList<>();
+        document.setTextLoader((offset, maxBytes) -> {
+            reads.add(offset);
+            int start = Math.min(offset, body.length);
+            return new String(body, start, Math.min(maxBytes, body.length - start), StandardCharsets.UTF_8);
+        });
+
+        String summary = new ResultEntry(document, new SnippetGenerator(new String[] {"librari"})).getSummary();
+
+        assertTrue(summary, summary.contains("the libraries of the city"));
+        assertEquals(2, reads.size());
+    }
+
+    @Test
+    public void fallsBackToTheStartWithoutAMatch() {
+        byte[] body = "nothing to see here".getBytes(StandardCharsets.UTF_8);
+        DocumentSummary document = new DocumentSummary(1, "", "", body, false);
+
+        assertEquals("nothing to see here",
+                new ResultEntry(document, new SnippetGenerator(new String[] {"librari"})).getSummary());
+    }
+}
@@ -0,0 +1,72 @@
+package codeu.unnamed.frontendweb;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SnippetGeneratorTest {
+
+    @Test
+    public void matchesWordsTheStemmerRewrites() {
+        SnippetGenerator generator = new SnippetGenerator(new String[] {"die"});
+
+        assertEquals("plants dying", generator.generate("plants dying", true));
+        assertNull(generator.generate("plants growing", true));
+    }
+
+    @Test
+    public void findsTheWindowPastManyDistinctWords() {
+        StringBuilder text = new StringBuilder();
+        for (int n = 0; n < 2000; n++) {
+            text.append("filler").append(n).append(' ');
+        }
+        text.append("the libraries of the city");
+        for (int n = 0; n < 100; n++) {
+            text.append(" filler").append(n);
+        }
+
+        // repeated words come from the memo, which has grown several times by now
+        String window = new SnippetGenerator(new String[] {"librari"}).generate(text, true);
+
+        assertTrue(window, window.contains("the libraries of the city"));
+    }
+
+    @Test
+    public void readsOnlyWindowsPastThePrefixInOneCall() {
+        StringBuilder late = new StringBuilder();
+        for (int n = 0; n < 1000; n++) {
+            late.append("filler").append(n).append(' ');
+        }
+        late.append("the libraries of the city");
+        byte[] early = "the libraries of the city".getBytes(StandardCharsets.UTF_8);
+        byte[] body = late.toString().getBytes(StandardCharsets.UTF_8);
+
+        List<DocumentSummary> documents = Arrays.asList(
+                new DocumentSummary(1, "", "", early, false),
+                new DocumentSummary(2, "", "", Arrays.copyOf(body, 4096), true),
+                new DocumentSummary(3, "", "", early, false));
+        List<SnippetIndex> indexes = Arrays.asList(
+                SnippetIndex.build(early, 1000), SnippetIndex.build(body, 2000), null);
+
+        List<long[]> calls = new ArrayList<>();
+        String[] summaries = new SnippetGenerator(new String[] {"librari"}).generate(documents, indexes,
+                (ids, offsets, lengths) -> {
+                    calls.add(ids);
+                    return Arrays.asList(new String(body, offsets[0], lengths[0], StandardCharsets.UTF_8));
+                });
+
+        assertEquals(1, calls.size());
+        assertArrayEquals(new long[] {2}, calls.get(0));
+        assertEquals("the libraries of the city", summaries[0]);
+        assertTrue(summaries[1], summaries[1].endsWith("the libraries of the city"));
+        assertNull(summaries[2]);
+    }
+}
@@ -0,0 +1,59 @@
+package codeu.unnamed.frontendweb;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class SnippetIndexTest {
+
+    private static final byte[] TEXT = ("the quick brown fox jumps over the lazy dog while the dogs "
+            + "were sleeping and a fox was running through the libraries of the city")
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void decodesWhatItEncodes() {
+        SnippetIndex index = SnippetIndex.build(TEXT, 1000);
+        SnippetIndex decoded = SnippetIndex.decode(index.encode());
+
+        assertNotNull(decoded);
+        assertEquals(index.getWordCount(), decoded.getWordCount());
+        for (String stem : new String[] {"the", "fox", "dog", "librari", "missing"}) {
+            assertArrayEquals(stem, index.getPositions(stem.hashCode()), decoded.getPositions(stem.hashCode()));
+        }
+        for (int word = 0; word < index.getWordCount(); word++) {
+            assertEquals(index.getStartOffset(word), decoded.getStartOffset(word));
+            assertEquals(index.getEndOffset(word), decoded.getEndOffset(word));
+        }
+    }
+
+    @Test
+    public void truncatedDataDecodesToNull() {
+        byte[] data = SnippetIndex.build(TEXT, 1000).encode();
+
+        for (int length = 0; length < data.length; length++) {
+            assertNull("length " + length, SnippetIndex.decode(Arrays.copyOf(data, length)));
+        }
+    }
+
+    @Test
+    public void corruptDataNeverThrows() {
+        byte[] data = SnippetIndex.build(TEXT, 1000).encode();
+        Random random = new Random(7);
+
+        for (int round = 0; round < 10000; round++) {
+            byte[] corrupt = data.clone();
+            corrupt[random.nextInt(corrupt.length)] = (byte) random.nextInt(256);
+            SnippetIndex.decode(corrupt);
+        }
+
+        // a count claiming far more entries than there are bytes
+        assertNull(SnippetIndex.decode(new byte[] {1, 5, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07}));
+    }
+}